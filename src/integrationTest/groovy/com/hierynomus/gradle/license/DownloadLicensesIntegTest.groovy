@@ -74,8 +74,8 @@ class DownloadLicensesIntegTest extends Specification {
 
     def "Test correctness of defaults"() {
         expect:
-        downloadLicenses.reportByLicenseType
-        downloadLicenses.reportByDependency
+        downloadLicenses.reportByLicenseType.get()
+        downloadLicenses.reportByDependency.get()
         downloadLicenses.enabled
     }
 
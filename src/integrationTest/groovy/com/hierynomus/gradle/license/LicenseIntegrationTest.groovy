@@ -78,7 +78,7 @@ class LicenseIntegrationTest extends IntegrationSpec {
 
         then:
         !r.standardOutput.contains("Missing header in: src/main/resources/prop.testing")
-        r.standardOutput.contains("Unknown file extension: src/main/resources/prop.testing")
+        r.standardOutput.contains("Skipped 1 files with an unknown extension and 0 binary files")
     }
 
     def "should be able to add mapping for new extensions"() {
@@ -125,10 +125,176 @@ license.mapping('sh.ftl', 'SCRIPT_STYLE')
         then:
         r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
         r.standardOutput.contains("Missing header in: src/main/java/Test.java")
-        r.standardOutput.contains("Unknown file extension: src/main/resources/prop.testing")
+        r.standardOutput.contains("Skipped 1 files with an unknown extension and 0 binary files")
 
     }
 
+    def "should skip binary files without a header"() {
+        given:
+        createPropertiesFile()
+        byte[] png = [0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A, 0x00, 0x00] as byte[]
+        file("src/main/resources/image.png").bytes = png
+        File binary = file("src/main/java/Binary.java")
+        binary.bytes = png
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "licenseFormatMain")
+
+        then:
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        !r.standardOutput.contains("Missing header in: src/main/java/Binary.java")
+        r.standardOutput.contains("Skipped 1 files with an unknown extension and 1 binary files")
+        binary.bytes == png
+    }
+
+    def "should share a single worker between tasks"() {
+        given:
+        createPropertiesFile()
+        File testFile = file("src/test/resources/other.properties")
+        testFile << "key5 = value5\n"
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "licenseTest", "--max-workers=1")
+
+        then:
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        r.standardOutput.contains("Missing header in: src/test/resources/other.properties")
+    }
+
+    def "should report the verdict of every checked file"() {
+        given:
+        createPropertiesFile()
+        createJavaFile()
+        createTestingFile()
+
+        when:
+        runTasksSuccessfully("licenseMain")
+
+        then:
+        file("build/reports/license-check/licenseMain.txt").text == """checked 3
+missing 2
+MISSING src/main/java/Test.java
+MISSING src/main/resources/test.properties
+UNSUPPORTED src/main/resources/prop.testing
+"""
+    }
+
+    def "should check all projects in one pass"() {
+        given:
+        createPropertiesFile()
+        createJavaFile()
+        File subProject = addSubproject("sub")
+        new File(subProject, "build.gradle") << """
+plugins {
+    id "java"
+}
+
+apply plugin: "com.github.hierynomus.license-base"
+
+license {
+    header = rootProject.file("LICENSE")
+    ignoreFailures = true
+}
+"""
+        file("sub/src/main/java/Sub.java") << "public class Sub {}\n"
+        // Checks the same files as licenseMain, with the same settings
+        buildFile << """
+task licenseJava(type: com.hierynomus.gradle.license.tasks.LicenseCheck) {
+    source = fileTree("src/main/java")
+}
+"""
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseAll")
+
+        then:
+        r.standardOutput.contains("Missing header in 2 files of project :")
+        r.standardOutput.contains("Missing header in 1 files of project :sub")
+        file("build/reports/license-check/licenseAll.txt").text == """checked 3
+missing 3
+MISSING src/main/java/Test.java
+MISSING src/main/resources/test.properties
+MISSING sub/src/main/java/Sub.java
+"""
+    }
+
+    def "should keep the check results of all projects per settings"() {
+        given:
+        createJavaFile()
+        file("OTHER_LICENSE") << "This is another license"
+        buildFile << """
+task licenseOther(type: com.hierynomus.gradle.license.tasks.LicenseCheck) {
+    source = fileTree("src/main/java")
+    header = file(project.findProperty("otherHeader") ?: "LICENSE")
+}
+"""
+        runTasksSuccessfully("licenseAll")
+        def caches = { file("build/tmp/licenseAll").list().findAll { it.endsWith(".cache") } as Set }
+        def before = caches()
+
+        when:
+        runTasksSuccessfully("licenseAll", "-PotherHeader=OTHER_LICENSE")
+
+        then:
+        before.size() == 1
+        caches().size() == 2
+        caches().containsAll(before)
+
+        when:
+        runTasksSuccessfully("licenseAll")
+
+        then:
+        caches() == before
+    }
+
+    def "should only check the files changed since a ref"() {
+        given:
+        createJavaFile()
+        git("init", "-q")
+        git("add", ".")
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial")
+        createPropertiesFile()
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "-Plicense.changedSince=HEAD")
+
+        then:
+        r.standardOutput.contains("1 source files changed since HEAD")
+        file("build/reports/license-check/licenseMain.txt").text == """checked 1
+missing 1
+MISSING src/main/resources/test.properties
+"""
+    }
+
+    def "should stop at the first missing header when failing fast"() {
+        given:
+        createPropertiesFile()
+        createJavaFile()
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "-Plicense.failFast=true")
+
+        then:
+        r.standardOutput.contains("Stopped at the first file missing a header")
+        file("build/reports/license-check/licenseMain.txt").text.contains("missing 1\n")
+    }
+
+    def "should reuse the configuration cache"() {
+        given:
+        createPropertiesFile()
+        buildFile << """
+apply plugin: "com.github.hierynomus.license-report"
+"""
+
+        when:
+        runTasksSuccessfully("licenseMain", "downloadLicenses", "--configuration-cache")
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "downloadLicenses", "--configuration-cache")
+
+        then:
+        r.standardOutput.contains("Reusing configuration cache.")
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+    }
+
     def "should fail with exception if files are missing headers"() {
         given:
         createPropertiesFile()
@@ -241,6 +407,24 @@ key2 = value2
         propFile.text != contents
     }
 
+    def "should fill in the configured value of a placeholder with a default"() {
+        given:
+        createLicenseFile('This is a sample license created in ${year:1999}')
+        File propFile = createPropertiesFile()
+        buildFile << "license.ext.year = 2012\n"
+
+        when:
+        runTasksSuccessfully("licenseFormatMain")
+        ExecutionResult r = runTasksSuccessfully("licenseMain")
+
+        then:
+        propFile.text.startsWith('''#
+# This is a sample license created in 2012
+#
+''')
+        !r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+    }
+
     def "should add header to Java file"() {
         File javaFile = createJavaFile()
 
@@ -257,6 +441,21 @@ public class Test {
 '''
     }
 
+    def "should keep the permissions of a formatted file"() {
+        given:
+        File propFile = createPropertiesFile()
+        propFile.setExecutable(true)
+
+        when:
+        runTasksSuccessfully("licenseFormatMain")
+
+        then:
+        propFile.text.startsWith("#\n# This is a sample license created in \${year}\n")
+        propFile.text.endsWith("key1 = value1\nkey2 = value2\n")
+        propFile.canExecute()
+        propFile.parentFile.list() as List == ["test.properties"]
+    }
+
     def "can apply custom header definition formatting"() {
         File javaFile = createJavaFile()
         createLicenseFile('''Put a gun against his head,
@@ -323,6 +522,146 @@ tasks.licenseMain {
         r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
     }
 
+    def "should remember verdicts between runs"() {
+        given:
+        createPropertiesFile()
+        createPropertiesFileWithHeader()
+        buildFile << """
+tasks.licenseMain.ext.year = 2012
+"""
+        runTasksSuccessfully("licenseMain")
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "--rerun-tasks")
+
+        then:
+        new File(projectDir, "build/tmp/licenseMain/header-check.cache").exists()
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        !r.standardOutput.contains("Missing header in: src/main/resources/header.properties")
+    }
+
+    def "should forget verdicts when the check is taken from the build cache"() {
+        given:
+        File propFile = createPropertiesFile()
+        settingsFile << """
+buildCache {
+    local {
+        directory = file("build-cache")
+    }
+}
+"""
+        String original = propFile.text
+        runTasksSuccessfully("licenseMain", "--build-cache")
+        propFile.text = "key2 = value2\n"
+        runTasksSuccessfully("licenseMain", "--build-cache")
+        File cache = new File(projectDir, "build/tmp/licenseMain/header-check.cache")
+        boolean written = cache.exists()
+        propFile.text = original
+
+        when:
+        runTasksSuccessfully("licenseMain", "--build-cache")
+
+        then:
+        written
+        !cache.exists()
+    }
+
+    def "should check changed files again"() {
+        given:
+        File propFile = createPropertiesFile()
+        buildFile << """
+tasks.licenseMain.ext.year = 2012
+"""
+        runTasksSuccessfully("licenseMain")
+
+        when:
+        propFile.text = "# This is a sample license created in 2012\n" + propFile.text
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "--rerun-tasks")
+
+        then:
+        !r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+    }
+
+    def "should check all files again when the header changes"() {
+        given:
+        createPropertiesFileWithHeader()
+        buildFile << """
+tasks.licenseMain.ext.year = 2012
+"""
+        runTasksSuccessfully("licenseMain")
+
+        when:
+        createLicenseFile('This is another sample license created in ${year}')
+        ExecutionResult r = runTasksSuccessfully("licenseMain")
+
+        then:
+        r.standardOutput.contains("Missing header in: src/main/resources/header.properties")
+    }
+
+    def "should only check changed files and keep reporting unchanged failures"() {
+        given:
+        createPropertiesFile()
+        File javaFile = createJavaFile()
+        runTasksSuccessfully("licenseMain")
+
+        when:
+        javaFile.text = '''/**
+ * This is a sample license created in ${year}
+ */
+''' + javaFile.text
+        ExecutionResult r = runTasksSuccessfully("licenseMain", "--info")
+
+        then:
+        r.standardOutput.contains("Incremental license run: 1 added or modified, 0 removed files")
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        !r.standardOutput.contains("Missing header in: src/main/java/Test.java")
+    }
+
+    def "should find header that does not fit in the scanned bytes"() {
+        given:
+        createPropertiesFile()
+        createPropertiesFileWithHeader()
+        buildFile << """
+tasks.licenseMain.ext.year = 2012
+license {
+    scanBytes = 16
+}
+"""
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain")
+
+        then:
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        !r.standardOutput.contains("Missing header in: src/main/resources/header.properties")
+    }
+
+    def "should accept any of the valid headers"() {
+        given:
+        createPropertiesFile()
+        createPropertiesFileWithHeader()
+        File old = file("src/main/resources/old.properties")
+        old.text = """# Old license for old.properties
+key5 = value5
+"""
+        file("OLD_LICENSE").text = 'Old license for ${file.name}'
+        file("OTHER_LICENSE").text = 'This is a sample license created in ${year}'
+        buildFile << """
+tasks.licenseMain.ext.year = 2012
+tasks.licenseMain.header = file("LICENSE_NEW")
+tasks.licenseMain.validHeaders = files("OTHER_LICENSE", "OLD_LICENSE")
+"""
+        file("LICENSE_NEW").text = 'This is the new license'
+
+        when:
+        ExecutionResult r = runTasksSuccessfully("licenseMain")
+
+        then:
+        r.standardOutput.contains("Missing header in: src/main/resources/test.properties")
+        !r.standardOutput.contains("Missing header in: src/main/resources/header.properties")
+        !r.standardOutput.contains("Missing header in: src/main/resources/old.properties")
+    }
+
 //    def "should apply license from classpath"() {
 //        given:
 //        File propFile = createPropertiesFile()
@@ -339,6 +678,11 @@ tasks.licenseMain {
 //    }
 //
 
+    void git(String... args) {
+        Process process = new ProcessBuilder(["git"] + args.toList()).directory(projectDir).inheritIO().start()
+        assert process.waitFor() == 0
+    }
+
      File createLicenseFile(String content) {
         File file = file("LICENSE")
         file.text = content
@@ -165,6 +165,35 @@ downloadLicenses.includeProjectDependencies = true
         dependencyWithLicensePresent(xmlByDependency, "testSubGroup:subproject:1.7", "subproject-1.7.jar", "No license found")
     }
 
+    def "should report a dependency shared by projects once"() {
+        given:
+        subProjectBuildFile << """
+dependencies {
+    implementation "com.google.guava:guava:15.0"
+}
+"""
+        buildFile << """
+dependencies {
+    implementation project(":subproject")
+    implementation "com.google.guava:guava:15.0"
+}
+
+downloadLicenses.licenses = [
+    "com.google.guava:guava:15.0": license("MY_LICENSE", "MY_URL")
+]
+downloadLicenses.includeProjectDependencies = true
+"""
+        when:
+        runTasksSuccessfully("downloadLicenses")
+
+        then:
+        def xmlByDependency = xml4LicenseByDependencyReport()
+
+        dependenciesInReport(xmlByDependency) == 2
+        dependencyWithLicensePresent(xmlByDependency, "com.google.guava:guava:15.0", "guava-15.0.jar", "MY_LICENSE")
+        dependencyWithLicensePresent(xmlByDependency, "testSubGroup:subproject:1.7", "subproject-1.7.jar", "No license found")
+    }
+
     def "should not report on dependencies in other configurations"() {
         given:
         buildFile << """
@@ -613,6 +642,70 @@ downloadLicenses {
 
     }
 
+    def "should read the licenses of a snapshot dependency again in every build"() {
+        given:
+        directory("repo/org/example/snapshot/1.0-SNAPSHOT")
+        file("repo/org/example/snapshot/1.0-SNAPSHOT/snapshot-1.0-SNAPSHOT.jar")
+        File pom = file("repo/org/example/snapshot/1.0-SNAPSHOT/snapshot-1.0-SNAPSHOT.pom")
+        pom.text = snapshotPom("FIRST_LICENSE")
+        buildFile << """
+repositories {
+    maven { url = file("repo") }
+}
+
+dependencies {
+    implementation "org.example:snapshot:1.0-SNAPSHOT"
+}
+
+downloadLicenses.licenseCacheDir = file("license-cache")
+"""
+        runTasksSuccessfully("downloadLicenses")
+        pom.text = snapshotPom("SECOND_LICENSE")
+
+        when:
+        runTasksSuccessfully("downloadLicenses", "--rerun-tasks")
+
+        then:
+        def xmlByDependency = xml4LicenseByDependencyReport()
+        dependencyWithLicensePresent(xmlByDependency, "org.example:snapshot:1.0-SNAPSHOT", "snapshot-1.0-SNAPSHOT.jar", "SECOND_LICENSE")
+    }
+
+    def "should look for a POM again that could not be found before"() {
+        given:
+        directory("repo/org/example/late/1.0")
+        file("repo/org/example/late/1.0/late-1.0.jar")
+        buildFile << """
+repositories {
+    maven {
+        url = file("repo")
+        metadataSources { mavenPom(); artifact() }
+    }
+}
+
+dependencies {
+    implementation "org.example:late:1.0"
+}
+"""
+        runTasksSuccessfully("downloadLicenses")
+        file("repo/org/example/late/1.0/late-1.0.pom").text = """<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>org.example</groupId>
+    <artifactId>late</artifactId>
+    <version>1.0</version>
+    <licenses>
+        <license><name>LATE_LICENSE</name></license>
+    </licenses>
+</project>
+"""
+
+        when:
+        runTasksSuccessfully("downloadLicenses")
+
+        then:
+        def xmlByDependency = xml4LicenseByDependencyReport()
+        dependencyWithLicensePresent(xmlByDependency, "org.example:late:1.0", "late-1.0.jar", "LATE_LICENSE")
+    }
+
     def "should work if no dependencies in project"() {
         given:
         buildFile << """
@@ -763,6 +856,19 @@ dependencies {
         new XmlSlurper().parse(reportByDependency)
     }
 
+    static String snapshotPom(String license) {
+        """<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>org.example</groupId>
+    <artifactId>snapshot</artifactId>
+    <version>1.0-SNAPSHOT</version>
+    <licenses>
+        <license><name>$license</name></license>
+    </licenses>
+</project>
+"""
+    }
+
     static def dependenciesInReport(GPathResult xmlByDependency) {
         xmlByDependency.dependency.size()
     }
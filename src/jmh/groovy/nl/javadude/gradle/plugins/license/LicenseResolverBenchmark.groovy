@@ -0,0 +1,146 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+/**
+ * Resolving the licenses of the dependencies of a project from a Maven repository on disk. Most of the dependencies
+ * only declare their license in one of a few shared parent POMs, like in a real dependency tree.
+ */
+@State(Scope.Benchmark)
+class LicenseResolverBenchmark {
+    private static final String GROUP = "org.example.bench"
+
+    @Param(["200"])
+    public int dependencies
+
+    /**
+     * Whether the licenses of an earlier build are kept in the license cache directory.
+     */
+    @Param(["false", "true"])
+    public boolean cached
+
+    private File root
+    private File repository
+    private File licenseCacheDir
+    private Project project
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    static class DependencyCounters {
+        public long dependencies
+
+        @Setup(Level.Iteration)
+        void reset() {
+            dependencies = 0
+        }
+    }
+
+    @Setup(Level.Trial)
+    void createRepository() {
+        root = File.createTempDir("license-jmh", "")
+        repository = new File(root, "repository")
+        licenseCacheDir = new File(root, "license-cache")
+
+        5.times { i ->
+            publish("parent-$i", "pom", pom("parent-$i", "pom", licenses("License $i", "http://example.org/license-$i")))
+        }
+        dependencies.times { i ->
+            // Every fourth dependency declares its own license, the others inherit the one of their parent
+            String licenses = i % 4 == 0 ? licenses("Apache License, Version 2.0", "http://www.apache.org/licenses/LICENSE-2.0") : ""
+            String parent = i % 4 == 0 ? "" : "<parent><groupId>$GROUP</groupId><artifactId>parent-${i % 5}</artifactId><version>1.0</version></parent>"
+            publish("lib-$i", "jar", pom("lib-$i", "jar", parent + licenses))
+        }
+
+        if (cached) {
+            // The first build fills the cache, the measured ones find their dependencies in it
+            resolver(newProject()).provideLicenseMap4Dependencies()
+        }
+    }
+
+    @Setup(Level.Invocation)
+    void createProject() {
+        // A resolved configuration cannot be resolved again, so every invocation gets a new project
+        project = newProject()
+    }
+
+    @TearDown(Level.Trial)
+    void deleteRepository() {
+        root.deleteDir()
+    }
+
+    @Benchmark
+    Set<DependencyMetadata> resolve(DependencyCounters counters) {
+        Set<DependencyMetadata> licenses = resolver(project).provideLicenseMap4Dependencies()
+        counters.dependencies += dependencies
+        licenses
+    }
+
+    private LicenseResolver resolver(Project project) {
+        new LicenseResolver(dependencies: ResolvedDependencies.resolve(project, "licenses", false, []),
+                pomResolver: new ProjectPomResolver(project),
+                ignoreFatalParseErrors: false,
+                aliases: [:],
+                licenses: [:],
+                licenseCacheDir: cached ? licenseCacheDir : null)
+    }
+
+    private Project newProject() {
+        Project project = ProjectBuilder.builder().withProjectDir(new File(root, "project")).build()
+        project.repositories.maven { url repository.toURI() }
+        project.configurations.create("licenses")
+        dependencies.times { i ->
+            project.dependencies.add("licenses", "$GROUP:lib-$i:1.0")
+        }
+        project
+    }
+
+    private void publish(String artifactId, String packaging, String pom) {
+        File dir = new File(repository, "${GROUP.replace('.', '/')}/$artifactId/1.0")
+        dir.mkdirs()
+        new File(dir, "$artifactId-1.0.pom").text = pom
+        if (packaging == "jar") {
+            new File(dir, "$artifactId-1.0.jar").bytes = new byte[0]
+        }
+    }
+
+    private static String pom(String artifactId, String packaging, String content) {
+        """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+  <modelVersion>4.0.0</modelVersion>
+  $content
+  <groupId>$GROUP</groupId>
+  <artifactId>$artifactId</artifactId>
+  <version>1.0</version>
+  <packaging>$packaging</packaging>
+</project>
+"""
+    }
+
+    private static String licenses(String name, String url) {
+        "<licenses><license><name>$name</name><url>$url</url></license></licenses>"
+    }
+}
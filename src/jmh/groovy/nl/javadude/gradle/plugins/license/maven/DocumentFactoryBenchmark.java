@@ -0,0 +1,79 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.document.Document;
+import com.mycila.maven.plugin.license.document.DocumentPropertiesLoader;
+import com.mycila.maven.plugin.license.document.DocumentType;
+import com.mycila.maven.plugin.license.header.HeaderDefinition;
+import com.mycila.maven.plugin.license.header.HeaderType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Looking up the header style of a file by its extension, done once for every file of every run.
+ */
+@State(Scope.Benchmark)
+public class DocumentFactoryBenchmark {
+    private static final String[] NAMES = {
+                    "Main.java", "build.gradle", "pom.xml", "messages.properties", "deploy.sh", "app.js", "style.css",
+                    "schema.sql", "README", "index.HTML", "Script.groovy", "config.yaml", "Makefile", "data.unknown"
+    };
+
+    private DocumentFactory documentFactory;
+    private File[] files;
+
+    @Setup
+    public void createFactory() {
+        File basedir = new File("project");
+        documentFactory = documentFactory(basedir, new DocumentPropertiesLoader() {
+            @Override
+            public Properties load(Document document) {
+                return new Properties();
+            }
+        });
+        files = new File[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            files[i] = new File(basedir, "src/main/" + NAMES[i]);
+        }
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (File file : files) {
+            blackhole.consume(documentFactory.createDocuments(file));
+        }
+    }
+
+    /**
+     * A factory with the default mappings and header definitions, like the license tasks use without configuration.
+     */
+    static DocumentFactory documentFactory(File basedir, DocumentPropertiesLoader propertiesLoader) {
+        Map<String, String> mapping = new HashMap<String, String>(DocumentType.defaultMapping());
+        mapping.put(DocumentType.UNKNOWN.getExtension(), DocumentType.UNKNOWN.getDefaultHeaderTypeName());
+        Map<String, HeaderDefinition> definitions = new HashMap<String, HeaderDefinition>(HeaderType.defaultDefinitions());
+        definitions.put(HeaderType.UNKNOWN.getDefinition().getType(), HeaderType.UNKNOWN.getDefinition());
+        return new DocumentFactory(basedir, mapping, definitions, "UTF-8", new String[] { "copyright" }, propertiesLoader);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import org.gradle.api.file.FileCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * A full check run over a source tree in which every tenth file misses its header.
+ */
+@State(Scope.Benchmark)
+public class LicenseCheckBenchmark {
+    @Param({ "2000" })
+    public int files;
+
+    private SourceTree tree;
+    private FileCollection source;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = new SourceTree(files, 10);
+        source = tree.source();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public int check(FileCounters counters) throws IOException {
+        LicenseCheckMojo callback = new LicenseCheckMojo(tree.root, false);
+        tree.mojo(source).execute(callback);
+        counters.add(tree.files.size(), tree.bytes());
+        return callback.missingHeaders.size();
+    }
+}
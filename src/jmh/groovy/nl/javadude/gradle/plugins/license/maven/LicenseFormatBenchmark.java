@@ -0,0 +1,81 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.HeaderSection;
+import com.mycila.maven.plugin.license.document.Document;
+import com.mycila.maven.plugin.license.document.DocumentPropertiesLoader;
+import com.mycila.maven.plugin.license.header.Header;
+import com.mycila.maven.plugin.license.header.HeaderSource.UrlHeaderSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Adding the header to files that have none, which is what {@link LicenseFormatMojo#onHeaderNotFound} does for every
+ * file a format run touches. The files are put back before every invocation, outside of the measurement.
+ */
+@State(Scope.Benchmark)
+public class LicenseFormatBenchmark {
+    @Param({ "500" })
+    public int files;
+
+    private SourceTree tree;
+    private DocumentFactory documentFactory;
+    private Header header;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        tree = new SourceTree(files, 1);
+        header = new Header(new UrlHeaderSource(tree.header.toURI().toURL(), "UTF-8"), new HeaderSection[0]);
+        documentFactory = DocumentFactoryBenchmark.documentFactory(tree.root, new DocumentPropertiesLoader() {
+            @Override
+            public Properties load(Document document) {
+                Properties properties = new Properties();
+                properties.put("file.name", document.getFile().getName());
+                return properties;
+            }
+        });
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreTree() throws IOException {
+        tree.restore();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public int format(FileCounters counters) {
+        LicenseFormatMojo callback = new LicenseFormatMojo(tree.root, false, false);
+        for (File file : tree.files) {
+            callback.onHeaderNotFound(documentFactory.createDocuments(file), header);
+        }
+        counters.add(tree.files.size(), tree.bytes());
+        return callback.missingHeaders.size();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.header.HeaderDefinition;
+import org.gradle.api.Project;
+import org.gradle.api.file.FileCollection;
+import org.gradle.testfixtures.ProjectBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A generated source tree of mixed file types and sizes, the same for every run as the contents are seeded.
+ *
+ * The headers are added by the format mojo itself, so the check finds them exactly like it does in a real project.
+ */
+final class SourceTree {
+    static final String HEADER = "Copyright (C) 2011 Example Corp.\n"
+                    + "\n"
+                    + "Licensed under the Apache License, Version 2.0 (the \"License\");\n"
+                    + "you may not use this file except in compliance with the License.\n"
+                    + "You may obtain a copy of the License at\n"
+                    + "\n"
+                    + "    http://www.apache.org/licenses/LICENSE-2.0\n"
+                    + "\n"
+                    + "Unless required by applicable law or agreed to in writing, software\n"
+                    + "distributed under the License is distributed on an \"AS IS\" BASIS,\n"
+                    + "WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n"
+                    + "See the License for the specific language governing permissions and\n"
+                    + "limitations under the License.\n";
+
+    static final String[] EXTENSIONS = { "java", "groovy", "xml", "properties", "sh", "js", "css", "sql" };
+
+    // Mostly small files, with the occasional large generated one
+    private static final int[] SIZES = { 512, 512, 2 * 1024, 2 * 1024, 8 * 1024, 32 * 1024, 256 * 1024 };
+
+    final Project project;
+    final File root;
+    final File header;
+    final List<File> files = new ArrayList<File>();
+    private final Map<File, byte[]> contents = new LinkedHashMap<File, byte[]>();
+    private long bytes;
+
+    /**
+     * @param count the number of files
+     * @param missingEvery every this many files one has no header, 1 leaves all files without one
+     */
+    SourceTree(int count, int missingEvery) throws IOException {
+        root = Files.createTempDirectory("license-jmh").toFile();
+        project = ProjectBuilder.builder().withProjectDir(root).build();
+        header = new File(root, "LICENSE");
+        Files.write(header.toPath(), HEADER.getBytes(StandardCharsets.UTF_8));
+
+        Random random = new Random(42);
+        List<File> licensed = new ArrayList<File>();
+        for (int i = 0; i < count; i++) {
+            String extension = EXTENSIONS[i % EXTENSIONS.length];
+            File dir = new File(root, "src/module" + (i % 16) + "/package" + (i % 7));
+            File file = new File(dir, "File" + i + "." + extension);
+            dir.mkdirs();
+            Files.write(file.toPath(), body(extension, SIZES[random.nextInt(SIZES.length)]).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+            if (i % missingEvery != 0) {
+                licensed.add(file);
+            }
+        }
+
+        if (!licensed.isEmpty()) {
+            mojo(project.files(licensed)).execute(new LicenseFormatMojo(root, false, false));
+        }
+        for (File file : files) {
+            byte[] content = Files.readAllBytes(file.toPath());
+            contents.put(file, content);
+            bytes += content.length;
+        }
+    }
+
+    FileCollection source() {
+        return project.fileTree(new File(root, "src"));
+    }
+
+    /**
+     * The mojo as the license tasks configure it by default.
+     */
+    AbstractLicenseMojo mojo(FileCollection source) {
+        return new AbstractLicenseMojo(Collections.<File>emptyList(), root, Collections.<String, String>emptyMap(),
+                        false, false, true, false, header.toURI(), source, Collections.<String, String>emptyMap(),
+                        "UTF-8", Collections.<HeaderDefinition>emptyList());
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Put back the contents the files were generated with.
+     */
+    void restore() throws IOException {
+        for (Map.Entry<File, byte[]> content : contents.entrySet()) {
+            Files.write(content.getKey().toPath(), content.getValue());
+        }
+    }
+
+    void delete() throws IOException {
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String body(String extension, int size) {
+        StringBuilder sb = new StringBuilder(size + 64);
+        if (extension.equals("xml")) {
+            sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n");
+        } else if (extension.equals("sh")) {
+            sb.append("#!/bin/sh\n");
+        }
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append(line(extension, i)).append('\n');
+        }
+        if (extension.equals("xml")) {
+            sb.append("</root>\n");
+        }
+        return sb.toString();
+    }
+
+    private static String line(String extension, int i) {
+        if (extension.equals("xml")) {
+            return "    <item id=\"" + i + "\">value " + i + "</item>";
+        } else if (extension.equals("properties")) {
+            return "key." + i + "=value " + i;
+        } else if (extension.equals("sh")) {
+            return "echo \"line " + i + "\"";
+        } else if (extension.equals("css")) {
+            return ".class" + i + " { width: " + i + "px; }";
+        } else if (extension.equals("sql")) {
+            return "SELECT column" + i + " FROM table" + i + ";";
+        }
+        return "    int field" + i + " = " + i + ";";
+    }
+}
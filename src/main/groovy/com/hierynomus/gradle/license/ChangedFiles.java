@@ -0,0 +1,88 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.gradle.process.ExecSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The files that git reports as changed in a directory, for checking only those before a commit.
+ */
+public final class ChangedFiles {
+    private ChangedFiles() {
+    }
+
+    /**
+     * The files below the directory that differ from the given ref in the working tree or the index, together with the
+     * untracked files that are not ignored. Deleted files are included, they are never part of the source anyway.
+     */
+    public static Set<File> since(ExecOperations execOperations, File dir, String ref) {
+        if (ref.isEmpty() || ref.startsWith("-")) {
+            throw new GradleException("Invalid git ref for license.changedSince: '" + ref + "'");
+        }
+        Set<File> changed = new HashSet<File>();
+        // Paths are relative to the directory git runs in, which --relative also limits the diff to
+        add(changed, dir, git(execOperations, dir, "diff", "--name-only", "-z", "--relative", ref, "--"));
+        add(changed, dir, git(execOperations, dir, "ls-files", "--others", "--exclude-standard", "-z"));
+        return changed;
+    }
+
+    private static void add(Set<File> changed, File dir, String output) {
+        for (String path : output.split("\0")) {
+            if (!path.isEmpty()) {
+                changed.add(new File(dir, path).getAbsoluteFile());
+            }
+        }
+    }
+
+    private static String git(ExecOperations execOperations, final File dir, String... args) {
+        final List<String> command = Arrays.asList(args);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ExecResult result;
+        try {
+            result = execOperations.exec(new Action<ExecSpec>() {
+                @Override
+                public void execute(ExecSpec spec) {
+                    spec.setExecutable("git");
+                    spec.args(command);
+                    spec.setWorkingDir(dir);
+                    spec.setStandardOutput(out);
+                    spec.setErrorOutput(err);
+                    spec.setIgnoreExitValue(true);
+                }
+            });
+        } catch (GradleException e) {
+            throw new GradleException("Unable to run git to find the changed files in " + dir, e);
+        }
+        if (result.getExitValue() != 0) {
+            throw new GradleException("git " + command.get(0) + " failed in " + dir + ": "
+                            + new String(err.toByteArray(), StandardCharsets.UTF_8).trim());
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
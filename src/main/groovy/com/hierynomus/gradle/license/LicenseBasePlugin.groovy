@@ -21,7 +21,9 @@ import nl.javadude.gradle.plugins.license.License
 import nl.javadude.gradle.plugins.license.LicenseExtension
 import nl.javadude.gradle.plugins.license.PluginHelper
 import nl.javadude.gradle.plugins.license.header.HeaderDefinitionBuilder
+import nl.javadude.gradle.plugins.license.maven.AbstractLicenseMojo
 import com.hierynomus.gradle.license.tasks.LicenseCheck
+import com.hierynomus.gradle.license.tasks.LicenseCheckAll
 import com.hierynomus.gradle.license.tasks.LicenseFormat
 import org.gradle.api.Plugin
 import org.gradle.api.Project
@@ -38,6 +40,9 @@ class LicenseBasePlugin implements Plugin<Project> {
 
     static final String LICENSE_TASK_BASE_NAME = 'license'
     static final String FORMAT_TASK_BASE_NAME = 'licenseFormat'
+    static final String AGGREGATE_TASK_NAME = 'licenseAll'
+    static final String CHANGED_SINCE_PROPERTY = 'license.changedSince'
+    static final String FAIL_FAST_PROPERTY = 'license.failFast'
 
     protected Project project
     protected LicenseExtension extension
@@ -64,6 +69,11 @@ class LicenseBasePlugin implements Plugin<Project> {
         }
 
         configureTaskRule()
+        registerChecks()
+
+        if (project == project.rootProject) {
+            configureAggregateTask()
+        }
     }
 
     protected LicenseExtension createExtension() {
@@ -77,6 +87,9 @@ class LicenseBasePlugin implements Plugin<Project> {
             skipExistingHeaders = false
             useDefaultMappings = true
             strictCheck = false
+            scanBytes = AbstractLicenseMojo.DEFAULT_SCAN_BYTES
+            changedSince = project.findProperty(CHANGED_SINCE_PROPERTY)
+            failFast = project.hasProperty(FAIL_FAST_PROPERTY) && project.property(FAIL_FAST_PROPERTY) != 'false'
             encoding = System.properties['file.encoding']
             sourceSets = project.container(SourceSet)
 //            conventionMapping.with {
@@ -114,6 +127,7 @@ class LicenseBasePlugin implements Plugin<Project> {
             skipExistingHeaders = { extension.skipExistingHeaders }
             useDefaultMappings = { extension.useDefaultMappings }
             strictCheck = { extension.strictCheck }
+            scanBytes = { extension.scanBytes }
             inheritedProperties = { extension.ext.properties }
             inheritedMappings = { extension.internalMappings }
             excludes = { extension.excludePatterns }
@@ -121,6 +135,29 @@ class LicenseBasePlugin implements Plugin<Project> {
             encoding = { extension.encoding }
             headerDefinitions = { extension.headerDefinitions }
         }
+        task.changedSince.convention(project.provider { extension.changedSince })
+        task.failFast.convention(project.provider { extension.failFast })
+    }
+
+    /**
+     * Add the enabled check tasks of this project to those of the licenseAll task, they are created once it runs
+     */
+    private void registerChecks() {
+        Project project = this.project
+        LicenseChecks.of(project.gradle).get().add(project.path, project.provider {
+            project.tasks.withType(LicenseCheck).matching { LicenseCheck task -> task.enabled }.collect { LicenseCheck task ->
+                new LicenseChecks.Check(task.path, project.path, task.checkSettings, task.stableSources)
+            }
+        })
+    }
+
+    /**
+     * Add a task to the root project that checks the files of the license checks of all projects in one pass
+     */
+    private void configureAggregateTask() {
+        LicenseCheckAll task = project.tasks.create(AGGREGATE_TASK_NAME, LicenseCheckAll)
+        task.description = "Checks the license headers of all projects in one pass"
+        task.conventionMapping.ignoreFailures = { extension.ignoreFailures }
     }
 
     private void configureJava() {
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license;
+
+import org.gradle.api.Action;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceSpec;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the batches of the License tasks that were handed to the workers and have not run yet. A batch closes over
+ * the task that created it, so it cannot go through the parameters of a work item. This service outlives the tasks,
+ * and drops the batches that are left when the build finishes.
+ */
+public abstract class LicenseBatches implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+    private static final String NAME = "licenseBatches";
+
+    private final ConcurrentMap<String, Runnable> batches = new ConcurrentHashMap<String, Runnable>();
+
+    /**
+     * @return the service of the build
+     */
+    public static Provider<LicenseBatches> of(Gradle gradle) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, LicenseBatches.class,
+                new Action<BuildServiceSpec<BuildServiceParameters.None>>() {
+                    @Override
+                    public void execute(BuildServiceSpec<BuildServiceParameters.None> spec) {
+                    }
+                });
+    }
+
+    /**
+     * @return the id to take the batch back with
+     */
+    String add(Runnable batch) {
+        String id = UUID.randomUUID().toString();
+        batches.put(id, batch);
+        return id;
+    }
+
+    /**
+     * @return the batch, or null when it was taken or removed before
+     */
+    Runnable take(String id) {
+        return batches.remove(id);
+    }
+
+    @Override
+    public void close() {
+        batches.clear();
+    }
+}
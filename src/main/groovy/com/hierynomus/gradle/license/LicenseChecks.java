@@ -0,0 +1,103 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license;
+
+import nl.javadude.gradle.plugins.license.CheckSettings;
+import org.gradle.api.Action;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.api.services.BuildServiceSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The license checks of every project that applies the plugin, for the licenseAll task of the root project. Each
+ * project adds the checks of its own tasks, which are only created and read when the licenseAll task needs them.
+ */
+public abstract class LicenseChecks implements BuildService<BuildServiceParameters.None> {
+    private static final String NAME = "licenseChecks";
+
+    private final ConcurrentMap<String, Provider<List<Check>>> projects = new ConcurrentSkipListMap<String, Provider<List<Check>>>();
+
+    /**
+     * @return the service of the build
+     */
+    public static Provider<LicenseChecks> of(Gradle gradle) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, LicenseChecks.class,
+                new Action<BuildServiceSpec<BuildServiceParameters.None>>() {
+                    @Override
+                    public void execute(BuildServiceSpec<BuildServiceParameters.None> spec) {
+                    }
+                });
+    }
+
+    /**
+     * Add the checks of a project, the provider is queried when the licenseAll task runs.
+     */
+    public void add(String projectPath, Provider<List<Check>> checks) {
+        projects.put(projectPath, checks);
+    }
+
+    /**
+     * @return the enabled checks of all projects, by project path
+     */
+    public List<Check> checks() {
+        List<Check> checks = new ArrayList<Check>();
+        for (Provider<List<Check>> project : projects.values()) {
+            checks.addAll(project.get());
+        }
+        return checks;
+    }
+
+    /**
+     * A check task, with the settings and the files it checks.
+     */
+    public static final class Check {
+        final String taskPath;
+        final String projectPath;
+        final CheckSettings settings;
+        final FileCollection sources;
+
+        public Check(String taskPath, String projectPath, CheckSettings settings, FileCollection sources) {
+            this.taskPath = taskPath;
+            this.projectPath = projectPath;
+            this.settings = settings;
+            this.sources = sources;
+        }
+
+        public String getTaskPath() {
+            return taskPath;
+        }
+
+        public String getProjectPath() {
+            return projectPath;
+        }
+
+        public CheckSettings getSettings() {
+            return settings;
+        }
+
+        public FileCollection getSources() {
+            return sources;
+        }
+    }
+}
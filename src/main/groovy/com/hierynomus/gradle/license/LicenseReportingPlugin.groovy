@@ -28,6 +28,7 @@ class LicenseReportingPlugin implements Plugin<Project> {
     static final String DOWNLOAD_LICENSES_TASK_NAME = 'downloadLicenses'
     static final String DEFAULT_FILE_NAME_FOR_REPORTS_BY_DEPENDENCY = "dependency-license"
     static final String DEFAULT_FILE_NAME_FOR_REPORTS_BY_LICENSE = "license-dependency"
+    static final String DEFAULT_LICENSE_CACHE_DIR = "caches/license-gradle-plugin"
 
     protected DownloadLicensesExtension downloadLicensesExtension
 
@@ -60,9 +61,9 @@ class LicenseReportingPlugin implements Plugin<Project> {
     protected DownloadLicensesExtension createDownloadLicensesExtension() {
         downloadLicensesExtension = project.extensions.create(DOWNLOAD_LICENSES_TASK_NAME, DownloadLicensesExtension)
 
-        def html = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDir.path}/license" })
-        def xml = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDir.path}/license" })
-        def json = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDir.path}/license" })
+        def html = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDirectory.get().asFile.path}/license" })
+        def xml = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDirectory.get().asFile.path}/license" })
+        def json = new LicensesReport(enabled: true, destination: { -> "${project.reporting.baseDirectory.get().asFile.path}/license" })
 
         downloadLicensesExtension.with {
             // Default for extension
@@ -77,6 +78,7 @@ class LicenseReportingPlugin implements Plugin<Project> {
             aliases = [:]
             report = new DownloadLicensesReportExtension(html: html, xml: xml, json: json)
             dependencyConfiguration = LicenseBasePlugin.DEFAULT_DEPENDENCY_CONFIGURATION_TO_HANDLE
+            licenseCacheDir = new File(project.gradle.gradleUserHomeDir, DEFAULT_LICENSE_CACHE_DIR)
         }
 
         project.logger.info("Adding download licenses extension");
@@ -85,28 +87,30 @@ class LicenseReportingPlugin implements Plugin<Project> {
 
 
     /**
-     * Configure convention mapping.
+     * Configure the conventions of the task, which default back to the extension.
      *
      * @param task download license task
      */
     protected void configureTaskDefaults(DownloadLicenses task) {
-        task.conventionMapping.with {
-            reportByDependency = { downloadLicensesExtension.reportByDependency }
-            reportByLicenseType = { downloadLicensesExtension.reportByLicenseType }
-            reportByDependencyFileName = { downloadLicensesExtension.reportByDependencyFileName }
-            reportByLicenseFileName = { downloadLicensesExtension.reportByLicenseFileName }
-            includeProjectDependencies = {downloadLicensesExtension.includeProjectDependencies}
-            ignoreFatalParseErrors = {downloadLicensesExtension.ignoreFatalParseErrors}
-            licenses = { downloadLicensesExtension.licenses }
-            aliases = {downloadLicensesExtension.aliases }
-            xml = { downloadLicensesExtension.report.xml.enabled }
-            html = { downloadLicensesExtension.report.html.enabled }
-            json = { downloadLicensesExtension.report.json.enabled }
-            excludeDependencies = { downloadLicensesExtension.excludeDependencies }
-            xmlDestination = { new File("${downloadLicensesExtension.report.xml.destination}") }
-            htmlDestination = { new File("${downloadLicensesExtension.report.html.destination}") }
-            jsonDestination = { new File("${downloadLicensesExtension.report.json.destination}") }
-            dependencyConfiguration = { downloadLicensesExtension.dependencyConfiguration }
+        DownloadLicensesExtension extension = downloadLicensesExtension
+        task.with {
+            reportByDependency.convention(project.provider { extension.reportByDependency })
+            reportByLicenseType.convention(project.provider { extension.reportByLicenseType })
+            reportByDependencyFileName.convention(project.provider { extension.reportByDependencyFileName })
+            reportByLicenseFileName.convention(project.provider { extension.reportByLicenseFileName })
+            includeProjectDependencies.convention(project.provider { extension.includeProjectDependencies })
+            ignoreFatalParseErrors.convention(project.provider { extension.ignoreFatalParseErrors })
+            licenses.convention(project.provider { extension.licenses })
+            aliases.convention(project.provider { extension.aliases })
+            xml.convention(project.provider { extension.report.xml.enabled })
+            html.convention(project.provider { extension.report.html.enabled })
+            json.convention(project.provider { extension.report.json.enabled })
+            excludeDependencies.convention(project.provider { extension.excludeDependencies })
+            xmlDestination.convention(project.layout.dir(project.provider { new File("${extension.report.xml.destination}") }))
+            htmlDestination.convention(project.layout.dir(project.provider { new File("${extension.report.html.destination}") }))
+            jsonDestination.convention(project.layout.dir(project.provider { new File("${extension.report.json.destination}") }))
+            dependencyConfiguration.convention(project.provider { extension.dependencyConfiguration })
+            licenseCacheDir.convention(project.layout.dir(project.provider { extension.licenseCacheDir }))
         }
     }
 
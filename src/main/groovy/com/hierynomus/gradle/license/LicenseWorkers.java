@@ -0,0 +1,92 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license;
+
+import nl.javadude.gradle.plugins.license.maven.BatchWorkers;
+import org.gradle.api.Action;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the batches of a License task as work items of the Gradle Worker API.
+ *
+ * The batches of all License tasks then share the workers of the build, so the tasks of several projects overlap
+ * and together never use more threads than {@code --max-workers} allows. The work items run without isolation, in
+ * the classloader of the plugin, so a batch is kept by the {@link LicenseBatches} service and only its id goes
+ * through the parameters.
+ */
+public class LicenseWorkers implements BatchWorkers {
+    private final WorkQueue queue;
+    private final Provider<LicenseBatches> batches;
+    private final Set<String> submitted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public LicenseWorkers(WorkQueue queue, Provider<LicenseBatches> batches) {
+        this.queue = queue;
+        this.batches = batches;
+    }
+
+    @Override
+    public void submit(Runnable batch) {
+        final String id = batches.get().add(batch);
+        submitted.add(id);
+        queue.submit(BatchAction.class, new Action<BatchParameters>() {
+            @Override
+            public void execute(BatchParameters parameters) {
+                parameters.getBatches().set(batches);
+                parameters.getBatchId().set(id);
+            }
+        });
+    }
+
+    /**
+     * Waits for the work items, which also releases the worker of the task so the batches can use it.
+     */
+    @Override
+    public void await() {
+        try {
+            queue.await();
+        } finally {
+            // Only left behind when a work item did not run
+            for (String id : submitted) {
+                batches.get().take(id);
+            }
+            submitted.clear();
+        }
+    }
+
+    public interface BatchParameters extends WorkParameters {
+        Property<LicenseBatches> getBatches();
+
+        Property<String> getBatchId();
+    }
+
+    public abstract static class BatchAction implements WorkAction<BatchParameters> {
+        @Override
+        public void execute() {
+            Runnable batch = getParameters().getBatches().get().take(getParameters().getBatchId().get());
+            if (batch != null) {
+                batch.run();
+            }
+        }
+    }
+}
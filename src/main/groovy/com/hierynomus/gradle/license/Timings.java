@@ -0,0 +1,240 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license;
+
+import groovy.json.JsonOutput;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of a license task goes: counters, the time spent in each phase summed over all threads, and the
+ * slowest items, like files or dependencies. All methods can be called from any thread.
+ */
+public final class Timings {
+    public static final int DEFAULT_SLOWEST = 10;
+
+    private final String name;
+    private final int slowest;
+    private final long started = System.nanoTime();
+    private final Map<String, AtomicLong> counters = new LinkedHashMap<String, AtomicLong>();
+    private final Map<String, AtomicLong> phases = new LinkedHashMap<String, AtomicLong>();
+    private final PriorityQueue<Item> slowestItems = new PriorityQueue<Item>(11, new Comparator<Item>() {
+        @Override
+        public int compare(Item a, Item b) {
+            return a.nanos < b.nanos ? -1 : a.nanos > b.nanos ? 1 : 0;
+        }
+    });
+    private long elapsed = -1;
+
+    /**
+     * @param name what is timed, usually the path of the task
+     * @param slowest the number of slowest items to keep
+     */
+    public Timings(String name, int slowest) {
+        this.name = name;
+        this.slowest = slowest;
+    }
+
+    public void count(String counter, long amount) {
+        get(counters, counter).addAndGet(amount);
+    }
+
+    /**
+     * Add the time spent in a phase since {@code start}, a value of {@link System#nanoTime()}.
+     *
+     * @return the current time, to start the next phase from
+     */
+    public long time(String phase, long start) {
+        long now = System.nanoTime();
+        get(phases, phase).addAndGet(now - start);
+        return now;
+    }
+
+    /**
+     * Remember the time an item took when it is among the slowest.
+     */
+    public void item(String item, long nanos) {
+        synchronized (slowestItems) {
+            if (slowestItems.size() < slowest) {
+                slowestItems.add(new Item(item, nanos));
+            } else if (slowest > 0 && slowestItems.peek().nanos < nanos) {
+                slowestItems.poll();
+                slowestItems.add(new Item(item, nanos));
+            }
+        }
+    }
+
+    public long getCount(String counter) {
+        return get(counters, counter).get();
+    }
+
+    /**
+     * Stop the clock of the whole run.
+     */
+    public synchronized void stop() {
+        if (elapsed < 0) {
+            elapsed = System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * The slowest items, slowest first.
+     */
+    public List<Item> getSlowest() {
+        List<Item> items;
+        synchronized (slowestItems) {
+            items = new ArrayList<Item>(slowestItems);
+        }
+        Collections.sort(items, Collections.reverseOrder(slowestItems.comparator()));
+        return items;
+    }
+
+    /**
+     * A single line with the totals, the phases and the slowest item.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(name).append(':');
+        String separator = " ";
+        for (Map.Entry<String, Long> counter : snapshot(counters).entrySet()) {
+            sb.append(separator).append(counter.getValue()).append(' ').append(counter.getKey());
+            separator = ", ";
+        }
+        sb.append(" in ").append(millis(elapsed())).append(" ms");
+        Map<String, Long> phaseNanos = snapshot(phases);
+        separator = " (";
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            sb.append(separator).append(phase.getKey()).append(' ').append(millis(phase.getValue())).append(" ms");
+            separator = ", ";
+        }
+        if (!phaseNanos.isEmpty()) {
+            sb.append(')');
+        }
+        List<Item> items = getSlowest();
+        if (!items.isEmpty()) {
+            sb.append(", slowest ").append(items.get(0).name).append(' ').append(millis(items.get(0).nanos)).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write all timings as JSON, the times in milliseconds.
+     */
+    public void write(File file) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("name", name);
+        json.put("elapsedMillis", millis(elapsed()));
+        json.put("counters", snapshot(counters));
+        Map<String, Object> phaseMillis = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Long> phase : snapshot(phases).entrySet()) {
+            phaseMillis.put(phase.getKey(), millis(phase.getValue()));
+        }
+        json.put("phaseMillis", phaseMillis);
+        List<Map<String, Object>> slowestJson = new ArrayList<Map<String, Object>>();
+        for (Item item : getSlowest()) {
+            Map<String, Object> entry = new LinkedHashMap<String, Object>();
+            entry.put("name", item.name);
+            entry.put("millis", millis(item.nanos));
+            slowestJson.add(entry);
+        }
+        json.put("slowest", slowestJson);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(JsonOutput.prettyPrint(JsonOutput.toJson(json)));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Stop the clock, write the JSON report and log the summary. A report that cannot be written does not fail the build.
+     */
+    public void report(File file, Logger logger) {
+        stop();
+        try {
+            write(file);
+        } catch (IOException e) {
+            logger.warn("Unable to write the timings to {}", file, e);
+        }
+        logger.lifecycle("{}, details in {}", summary(), file);
+    }
+
+    private synchronized long elapsed() {
+        return elapsed < 0 ? System.nanoTime() - started : elapsed;
+    }
+
+    private static AtomicLong get(Map<String, AtomicLong> values, String key) {
+        synchronized (values) {
+            AtomicLong value = values.get(key);
+            if (value == null) {
+                value = new AtomicLong();
+                values.put(key, value);
+            }
+            return value;
+        }
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> values) {
+        Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+        synchronized (values) {
+            for (Map.Entry<String, AtomicLong> value : values.entrySet()) {
+                snapshot.put(value.getKey(), value.getValue().get());
+            }
+        }
+        return snapshot;
+    }
+
+    // Rounded to a tenth of a millisecond
+    private static double millis(long nanos) {
+        return Math.round(nanos / (TimeUnit.MILLISECONDS.toNanos(1) / 10.0)) / 10.0;
+    }
+
+    public static final class Item {
+        final String name;
+        final long nanos;
+
+        Item(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
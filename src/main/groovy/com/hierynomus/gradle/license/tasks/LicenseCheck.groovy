@@ -16,10 +16,23 @@
 package com.hierynomus.gradle.license.tasks
 
 import nl.javadude.gradle.plugins.license.License
+import org.gradle.api.tasks.CacheableTask
+import org.gradle.api.tasks.Internal
 
+/**
+ * Its outcome only depends on the content and relative paths of the sources, so it can be taken from the build cache.
+ */
+@CacheableTask
 class LicenseCheck extends License {
 
     LicenseCheck() {
         super(true)
     }
+
+    // The files missing a header are sources, not something this task creates
+    @Override
+    @Internal
+    Iterable<File> getAltered() {
+        return super.getAltered()
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.gradle.license.tasks
+
+import com.hierynomus.gradle.license.LicenseBatches
+import com.hierynomus.gradle.license.LicenseChecks
+import com.hierynomus.gradle.license.LicenseWorkers
+import com.hierynomus.gradle.license.Timings
+import nl.javadude.gradle.plugins.license.CheckSettings
+import nl.javadude.gradle.plugins.license.maven.AbstractLicenseMojo
+import nl.javadude.gradle.plugins.license.maven.HeaderCheckCache
+import nl.javadude.gradle.plugins.license.maven.LicenseCheckMojo
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.FileCollection
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.IgnoreEmptyDirectories
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFiles
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.VerificationTask
+import org.gradle.workers.WorkerExecutor
+
+import javax.inject.Inject
+
+/**
+ * Checks the files of all {@link LicenseCheck} tasks of the build in one pass. The files of the checks with the same
+ * settings are checked together, and only once when several checks include them. Missing headers are reported per
+ * project. The projects that apply the plugin add their checks to the {@link LicenseChecks} service.
+ */
+class LicenseCheckAll extends DefaultTask implements VerificationTask {
+
+    /**
+     * Whether or not to allow the build to continue if there are warnings.
+     */
+    @Input boolean ignoreFailures
+
+    private final File rootDir = getProject().rootDir
+    private final Provider<RegularFile> checkReport = getProject().layout.buildDirectory.file("reports/license-check/${name}.txt")
+    private final Provider<RegularFile> timingsReport = getProject().layout.buildDirectory.file("reports/license-timings/${name}.json")
+    private final Provider<LicenseChecks> checks = LicenseChecks.of(getProject().gradle)
+    private final Provider<List<CheckGroup>> groups = getProject().provider { collectGroups(registeredChecks()) }
+    private final FileCollection sources = getProject().files({ checkGroups().collectMany { it.sources.values() } })
+    private final Provider<LicenseBatches> batches = LicenseBatches.of(getProject().gradle)
+
+    LicenseCheckAll() {
+        usesService(checks)
+        usesService(batches)
+    }
+
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException()
+    }
+
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.ABSOLUTE)
+    @InputFiles
+    FileCollection getSources() {
+        return sources
+    }
+
+    /**
+     * The fingerprints of the settings the files are checked with
+     */
+    @Input
+    List<String> getSettingKeys() {
+        return groups.get().collect { it.key }
+    }
+
+    /**
+     * The verdict of every checked file
+     */
+    @OutputFile
+    File getReport() {
+        return checkReport.get().asFile
+    }
+
+    /**
+     * Where the time of the last run went, the summary of which is printed
+     */
+    @OutputFile
+    File getTimingsFile() {
+        return timingsReport.get().asFile
+    }
+
+    protected List<CheckGroup> checkGroups() {
+        return groups.get()
+    }
+
+    protected List<LicenseChecks.Check> registeredChecks() {
+        return checks.get().checks()
+    }
+
+    @TaskAction
+    void check() {
+        File rootDir = this.rootDir
+        Timings timings = new Timings(path, Timings.DEFAULT_SLOWEST)
+        LicenseWorkers workers = new LicenseWorkers(getWorkerExecutor().noIsolation(), batches)
+        List<LicenseCheckMojo> checks = new ArrayList<LicenseCheckMojo>()
+        Map<String, Integer> missingPerProject = new TreeMap<String, Integer>()
+
+        List<CheckGroup> checkGroups = groups.get()
+        removeUnusedCaches(checkGroups)
+        checkGroups.each { CheckGroup group ->
+            Map<File, Set<String>> projects = group.files()
+            logger.info("Checking ${projects.size()} files of ${group.sources.keySet().join(', ')} in one pass")
+
+            LicenseCheckMojo callback = new LicenseCheckMojo(rootDir, group.settings.skipExistingHeaders)
+            AbstractLicenseMojo mojo = group.settings.newMojo(rootDir, projects.keySet())
+            mojo.setHeaderCheckCache(new HeaderCheckCache(new File(getTemporaryDir(), cacheFileName(group.key))))
+            mojo.setTimings(timings)
+            mojo.setWorkers(workers)
+            mojo.execute(callback)
+
+            callback.missingHeaders.each { File file ->
+                projects.get(file).each { String project ->
+                    missingPerProject.put(project, (missingPerProject.get(project) ?: 0) + 1)
+                }
+            }
+            checks.add(callback)
+        }
+        LicenseCheckMojo.writeReport(getReport(), checks)
+        timings.report(getTimingsFile(), logger)
+
+        missingPerProject.each { String project, Integer count ->
+            logger.lifecycle("Missing header in ${count} files of project ${project}")
+        }
+        if (!getIgnoreFailures() && !missingPerProject.isEmpty()) {
+            throw new GradleException("License violations were found in projects: ${missingPerProject.keySet().join(', ')}")
+        }
+    }
+
+    /**
+     * The cache of the verdicts for the checks with the given settings, which keeps its name when other checks are
+     * added or removed
+     */
+    protected static String cacheFileName(String key) {
+        return "header-check-${key}.cache"
+    }
+
+    // The caches of settings that no check has any more
+    protected void removeUnusedCaches(List<CheckGroup> checkGroups) {
+        Set<String> used = checkGroups.collect { cacheFileName(it.key) } as Set<String>
+        getTemporaryDir().listFiles().each { File file ->
+            if (file.name.startsWith("header-check-") && file.name.endsWith(".cache") && !used.contains(file.name)) {
+                file.delete()
+            }
+        }
+    }
+
+    /**
+     * Group the enabled checks of all projects by their settings
+     */
+    protected static List<CheckGroup> collectGroups(List<LicenseChecks.Check> checks) {
+        Map<String, CheckGroup> groups = new LinkedHashMap<String, CheckGroup>()
+        checks.each { LicenseChecks.Check check ->
+            String key = check.settings.key
+            CheckGroup group = groups.get(key)
+            if (group == null) {
+                group = new CheckGroup(key, check.settings)
+                groups.put(key, group)
+            }
+            group.add(check.taskPath, check.projectPath, check.sources)
+        }
+        return new ArrayList<CheckGroup>(groups.values())
+    }
+
+    /**
+     * The checks that share their settings, with the files of each check by its task path
+     */
+    static class CheckGroup {
+        final String key
+        final CheckSettings settings
+        final Map<String, FileCollection> sources = new LinkedHashMap<String, FileCollection>()
+        final Map<String, String> projects = new HashMap<String, String>()
+
+        CheckGroup(String key, CheckSettings settings) {
+            this.key = key
+            this.settings = settings
+        }
+
+        void add(String taskPath, String projectPath, FileCollection files) {
+            sources.put(taskPath, files)
+            projects.put(taskPath, projectPath)
+        }
+
+        /**
+         * Every file of the checks once, with the projects it belongs to
+         */
+        Map<File, Set<String>> files() {
+            Map<File, Set<String>> files = new LinkedHashMap<File, Set<String>>()
+            sources.each { String taskPath, FileCollection collection ->
+                collection.files.each { File file ->
+                    Set<String> owners = files.get(file)
+                    if (owners == null) {
+                        owners = new TreeSet<String>()
+                        files.put(file, owners)
+                    }
+                    owners.add(projects.get(taskPath))
+                }
+            }
+            return files
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import com.mycila.maven.plugin.license.header.HeaderDefinition
+import nl.javadude.gradle.plugins.license.header.HeaderDefinitionBuilder
+import nl.javadude.gradle.plugins.license.maven.AbstractLicenseMojo
+import nl.javadude.gradle.plugins.license.maven.HeaderCheckCache
+
+/**
+ * Everything the verdict of a check depends on, next to the checked file itself. The files of checks with the same
+ * settings can be checked in a single pass.
+ */
+class CheckSettings {
+    URI header
+    List<File> validHeaders
+    Map<String, String> variables
+    Map<String, String> mappings
+    List<HeaderDefinitionBuilder> headerDefinitions
+    String encoding
+    boolean useDefaultMappings
+    boolean strictCheck
+    boolean skipExistingHeaders
+    int scanBytes
+
+    /**
+     * Fingerprint of the settings, the same for checks that give the same verdicts. The number of bytes scanned does
+     * not change a verdict, and is not part of it.
+     */
+    String getKey() {
+        List<String> values = new ArrayList<String>()
+        values.add(String.valueOf(header))
+        values.add(encoding)
+        values.add(String.valueOf(useDefaultMappings))
+        values.add(String.valueOf(strictCheck))
+        values.add(String.valueOf(skipExistingHeaders))
+        validHeaders.each { File validHeader ->
+            values.add(validHeader.absolutePath)
+        }
+        new TreeMap<String, Object>(variables).each { key, value ->
+            values.add("${key}=${value}".toString())
+        }
+        new TreeMap<String, String>(mappings).each { key, value ->
+            values.add("${key}:${value}".toString())
+        }
+        headerDefinitions.each { HeaderDefinitionBuilder definition ->
+            [definition.type, definition.firstLine, definition.beforeEachLine, definition.afterEachLine,
+             definition.endLine, definition.allowBlankLines, definition.skipLinePattern,
+             definition.firstLineDetectionPattern, definition.lastLineDetectionPattern, definition.isMultiline,
+             definition.padLines].each { values.add(String.valueOf(it)) }
+        }
+        return HeaderCheckCache.fingerprint(values)
+    }
+
+    /**
+     * A mojo that checks the given files with these settings
+     */
+    AbstractLicenseMojo newMojo(File rootDir, Iterable<File> source) {
+        List<HeaderDefinition> definitions = new ArrayList<HeaderDefinition>()
+        headerDefinitions.each { HeaderDefinitionBuilder definition ->
+            definitions.add(definition.build())
+        }
+        def mojo = new AbstractLicenseMojo(validHeaders, rootDir, variables, false, skipExistingHeaders, useDefaultMappings, strictCheck, header, source, mappings, encoding, definitions)
+        mojo.setScanBytes(scanBytes)
+        return mojo
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Licenses of dependencies found in their POMs, kept between builds.
+ *
+ * A released dependency always has the same POM, and so the same licenses, the only thing that changes the outcome
+ * is the alias configuration. Every alias configuration therefore has its own cache file, named after its fingerprint.
+ * Dependencies whose POM, or one of its parents, could not be resolved are never stored, so they are tried again.
+ * Snapshots and dependencies declared as changing are not released, and are never stored either, see
+ * {@link ResolvedDependencies#changing}.
+ */
+class DependencyLicenseCache {
+    private static final Logger logger = Logging.getLogger(DependencyLicenseCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File cacheFile;
+    private final Map<String, DependencyMetadata> entries = new LinkedHashMap<String, DependencyMetadata>();
+    private boolean modified;
+
+    DependencyLicenseCache(File directory, String fingerprint) {
+        this.cacheFile = new File(directory, "dependency-licenses-" + fingerprint + ".bin");
+    }
+
+    /**
+     * @return the file the entries are kept in
+     */
+    File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Load the entries of previous builds, a cache that cannot be read is ignored.
+     */
+    void load() {
+        entries.clear();
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try {
+            read(new FileInputStream(cacheFile));
+        } catch (IOException e) {
+            logger.info("Unable to read {}, resolving the POMs of all dependencies", cacheFile, e);
+        }
+    }
+
+    /**
+     * Load the entries from the content of the {@link #getCacheFile() cache file}, read by the caller.
+     *
+     * @param content the content of the file, null when there is none
+     */
+    void load(byte[] content) {
+        entries.clear();
+        if (content != null) {
+            read(new ByteArrayInputStream(content));
+        }
+    }
+
+    private void read(InputStream stream) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            try {
+                if (in.readInt() != FORMAT_VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    DependencyMetadata metadata = new DependencyMetadata();
+                    metadata.setDependency(readString(in));
+                    int licenses = in.readInt();
+                    List<LicenseMetadata> licenseList = new ArrayList<LicenseMetadata>(licenses);
+                    for (int j = 0; j < licenses; j++) {
+                        LicenseMetadata license = new LicenseMetadata();
+                        license.setLicenseName(readString(in));
+                        license.setLicenseTextUrl(readString(in));
+                        licenseList.add(license);
+                    }
+                    metadata.setLicenseMetadataList(licenseList);
+                    entries.put(key, metadata);
+                }
+                logger.debug("Loaded the licenses of {} dependencies from {}", count, cacheFile);
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.info("Unable to read {}, resolving the POMs of all dependencies", cacheFile, e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return a copy of the stored licenses of the dependency, or null when they are not known
+     */
+    DependencyMetadata get(String dependencyDesc) {
+        DependencyMetadata stored = entries.get(dependencyDesc);
+        if (stored == null) {
+            return null;
+        }
+        DependencyMetadata copy = new DependencyMetadata();
+        copy.setDependency(stored.getDependency());
+        copy.setLicenseMetadataList(new ArrayList<LicenseMetadata>(stored.getLicenseMetadataList()));
+        return copy;
+    }
+
+    void put(String dependencyDesc, DependencyMetadata metadata) {
+        DependencyMetadata stored = new DependencyMetadata();
+        stored.setDependency(metadata.getDependency());
+        stored.setLicenseMetadataList(new ArrayList<LicenseMetadata>(metadata.getLicenseMetadataList()));
+        entries.put(dependencyDesc, stored);
+        modified = true;
+    }
+
+    /**
+     * Store the entries when dependencies were added, a concurrent build writing the same file wins or loses as a whole.
+     */
+    void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File tmp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, DependencyMetadata> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    writeString(out, e.getValue().getDependency());
+                    out.writeInt(e.getValue().getLicenseMetadataList().size());
+                    for (LicenseMetadata license : e.getValue().getLicenseMetadataList()) {
+                        writeString(out, license.getLicenseName());
+                        writeString(out, license.getLicenseTextUrl());
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            modified = false;
+            logger.debug("Stored the licenses of {} dependencies in {}", entries.size(), cacheFile);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Fingerprint of everything next to the POMs that decides the licenses of a dependency. The order of the aliases
+     * is part of it, as the first matching alias is used.
+     */
+    static String fingerprint(Map<LicenseMetadata, List<Object>> aliases, boolean ignoreFatalParseErrors) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        update(md, String.valueOf(ignoreFatalParseErrors));
+        if (aliases != null) {
+            for (Map.Entry<LicenseMetadata, List<Object>> alias : aliases.entrySet()) {
+                update(md, "alias");
+                update(md, alias.getKey().getLicenseName());
+                update(md, alias.getKey().getLicenseTextUrl());
+                if (alias.getValue() == null) {
+                    continue;
+                }
+                for (Object aliasElem : alias.getValue()) {
+                    if (aliasElem instanceof LicenseMetadata) {
+                        update(md, "license");
+                        update(md, ((LicenseMetadata) aliasElem).getLicenseName());
+                        update(md, ((LicenseMetadata) aliasElem).getLicenseTextUrl());
+                    } else {
+                        // Anything but a String never matches, keep it apart from a String with the same text
+                        update(md, aliasElem instanceof String ? "name" : "other");
+                        update(md, String.valueOf(aliasElem));
+                    }
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest md, String value) {
+        md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
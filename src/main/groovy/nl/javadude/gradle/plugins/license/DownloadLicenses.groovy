@@ -15,153 +15,286 @@
  */
 package nl.javadude.gradle.plugins.license
 
+import com.hierynomus.gradle.license.Timings
 import org.gradle.api.DefaultTask
-import org.gradle.api.internal.ConventionTask
+import org.gradle.api.Project
+import org.gradle.api.artifacts.ArtifactCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.*
 
 import static nl.javadude.gradle.plugins.license.DownloadLicensesExtension.license
 
 /**
  * Task for downloading dependency licenses and generating reports.
+ *
+ * The dependency configurations of the projects are a lazy input, they are resolved when the task runs, or when the
+ * configuration cache entry is stored. So are the POMs of the dependencies, their licenses are read in the task action.
+ * When POMs could not be resolved the task is not up-to-date, and the configuration cache entry is stored again in the
+ * next build, so they are resolved again.
  */
-public class DownloadLicenses extends ConventionTask {
+public class DownloadLicenses extends DefaultTask {
 
     /**
      * Custom license mapping that overrides existent if needed.
      */
-    @Input Map<Object, Object> licenses
+    @Input final MapProperty<Object, Object> licenses = project.objects.mapProperty(Object, Object)
 
     /**
      * Aliases for licences that has different names spelling.
      */
-    @Input Map<Object, List<Object>> aliases
+    @Input final MapProperty<Object, List<Object>> aliases = project.objects.mapProperty(Object, List)
 
     /**
      * Generate report for each dependency.
      */
-    @Input boolean reportByDependency
+    @Input final Property<Boolean> reportByDependency = project.objects.property(Boolean)
 
     /**
      * Generate report for each license type.
      */
-    @Input boolean reportByLicenseType
+    @Input final Property<Boolean> reportByLicenseType = project.objects.property(Boolean)
 
     /**
      * Include project dependencies in reports.
      */
-    @Input boolean includeProjectDependencies
+    @Input final Property<Boolean> includeProjectDependencies = project.objects.property(Boolean)
 
     /**
      * Ignore fatal errors when parsing POMs of transitive dependencies.
      */
-    @Input boolean ignoreFatalParseErrors
+    @Input final Property<Boolean> ignoreFatalParseErrors = project.objects.property(Boolean)
 
     /**
      * List of dependencies that will be omitted in the report.
      */
-    @Input List<String> excludeDependencies
+    @Input final ListProperty<String> excludeDependencies = project.objects.listProperty(String)
 
     /**
      * Output directory for xml reports.
      */
-    @OutputDirectory File xmlDestination
+    @OutputDirectory final DirectoryProperty xmlDestination = project.objects.directoryProperty()
 
     /**
      * Output directory for html reports.
      */
-    @OutputDirectory File htmlDestination
+    @OutputDirectory final DirectoryProperty htmlDestination = project.objects.directoryProperty()
 
     /**
      * Output directory for json reports.
      */
-    @OutputDirectory File jsonDestination
+    @OutputDirectory final DirectoryProperty jsonDestination = project.objects.directoryProperty()
 
     /**
      * File name for reports by dependency.
      */
-    @Input String reportByDependencyFileName
+    @Input final Property<String> reportByDependencyFileName = project.objects.property(String)
 
     /**
      * File name for reports by license.
      */
-    @Input String reportByLicenseFileName
+    @Input final Property<String> reportByLicenseFileName = project.objects.property(String)
 
     /**
      * Is xml reports are enabled.
      */
-    @Input boolean xml
+    @Input final Property<Boolean> xml = project.objects.property(Boolean)
 
     /**
      * Is html reports are enabled.
      */
-    @Input boolean html
+    @Input final Property<Boolean> html = project.objects.property(Boolean)
 
     /**
      * Are json reports enabled.
      */
-    @Input boolean json
+    @Input final Property<Boolean> json = project.objects.property(Boolean)
 
     /**
      * The dependency configuration to report on.
      */
-    @Input String dependencyConfiguration
+    @Input final Property<String> dependencyConfiguration = project.objects.property(String)
+
+    /**
+     * Directory where the licenses found in the POMs are kept between builds, no cache is used when not set.
+     */
+    @Internal final DirectoryProperty licenseCacheDir = project.objects.directoryProperty()
+
+    /**
+     * The dependency configurations of the project, its subprojects, and the projects they depend on.
+     */
+    private final Provider<List<ProjectDependencies>> projectDependencies
+
+    /**
+     * The POMs of the dependencies without a configured or a cached license, and of their parents, by the path of the
+     * project whose repositories they were resolved from.
+     */
+    private final Provider<Map<String, List<ArtifactCollection>>> poms
+    private final Provider<List<String>> dependencyArtifacts
+
+    /**
+     * Lists the POMs that could not be resolved in the last run.
+     */
+    private final Provider<RegularFile> unresolvedPoms = project.layout.buildDirectory.file("tmp/${name}/unresolved-poms.txt")
+
+    private final Provider<RegularFile> timingsReport = project.layout.buildDirectory.file("reports/license-timings/${name}.json")
+
+    // Not stored in the configuration cache, the dependencies may have been resolved in an earlier build
+    private transient Timings timings
+    private transient ResolvedDependencies resolvedDependencies
+
+    DownloadLicenses() {
+        Project project = getProject()
+        projectDependencies = project.provider { collectDependencies(project) }
+        poms = project.provider { resolvePoms(project) }
+        dependencyArtifacts = project.provider { describeDependencies() }
+        outputs.upToDateWhen { DownloadLicenses task -> task.resolvedAllPoms() }
+    }
+
+    /**
+     * The resolved dependencies the reports are made of, so the reports are written again when these change.
+     */
+    @Input
+    Provider<List<String>> getDependencyArtifacts() {
+        dependencyArtifacts
+    }
+
+    /**
+     * Where the time of the last run went, the summary of which is printed
+     */
+    @OutputFile
+    File getTimingsFile() {
+        timingsReport.get().asFile
+    }
 
     @TaskAction
     def downloadLicenses() {
-        if (!enabled || (!isReportByDependency() && !isReportByLicenseType())
-           || (!isXml() && !isHtml() && !isJson())) {
+        if (!enabled || !writesReports()) {
             didWork = false;
             return;
         }
 
-        // Lazy dependency resolving
-        def dependencyLicensesSet = {
-            def licenseResolver = new LicenseResolver(project: project,
-                                                      includeProjectDependencies: getIncludeProjectDependencies(),
-                                                      ignoreFatalParseErrors: getIgnoreFatalParseErrors(),
-                                                      aliases: aliases.collectEntries {
-                                                          new MapEntry(resolveAliasKey(it.key), it.value)
-                                                      },
-                                                      licenses: getLicenses(),
-                                                      dependenciesToIgnore: excludeDependencies,
-                                                      dependencyConfiguration: dependencyConfiguration)
-            licenseResolver.provideLicenseMap4Dependencies()
-        }.memoize()
-
-        // Lazy reporter resolving
-        def reporter = { new LicenseReporter(xmlOutputDir: getXmlDestination(), htmlOutputDir: getHtmlDestination(), jsonOutputDir: getJsonDestination()) }
-
-        // Generate report that groups dependencies
-        if (isReportByDependency()) {
-            if(isHtml()) {
-                reporter().generateHTMLReport4DependencyToLicense(
-                        dependencyLicensesSet(), getReportByDependencyFileName() + ".html")
-            }
-            if(isXml()) {
-                reporter().generateXMLReport4DependencyToLicense(
-                        dependencyLicensesSet(), getReportByDependencyFileName() + ".xml")
-            }
-            if(isJson()) {
-                reporter().generateJSONReport4DependencyToLicense(
-                        dependencyLicensesSet(), getReportByDependencyFileName() + ".json")
-            }
+        Timings timings = timings()
+        def licenseResolver = new LicenseResolver(dependencies: resolvedDependencies(),
+                                                  pomResolver: new ResolvedPoms(poms.get()),
+                                                  ignoreFatalParseErrors: ignoreFatalParseErrors.get(),
+                                                  aliases: resolvedAliases(),
+                                                  licenses: licenses.get(),
+                                                  licenseCacheDir: licenseCacheDir.getOrNull()?.asFile,
+                                                  timings: timings)
+        Set<DependencyMetadata> dependencies = licenseResolver.provideLicenseMap4Dependencies()
+        rememberUnresolved(licenseResolver.unresolvedPoms)
+        def reporter = new LicenseReporter(xmlOutputDir: xmlDestination.get().asFile, htmlOutputDir: htmlDestination.get().asFile,
+                jsonOutputDir: jsonDestination.get().asFile)
+
+        // All reports are written from a single pass over the dependencies
+        long start = System.nanoTime()
+        reporter.generateReports(dependencies,
+                reportByDependency.get() ? reportByDependencyFileName.get() : null,
+                reportByLicenseType.get() ? reportByLicenseFileName.get() : null,
+                xml.get(), html.get(), json.get())
+        timings.time("writeReports", start)
+        timings.report(getTimingsFile(), logger)
+    }
+
+    /**
+     * Collect the dependency configuration of the project and its subprojects. Nothing is collected when no report is
+     * written.
+     */
+    protected List<ProjectDependencies> collectDependencies(Project project) {
+        writesReports() ? ProjectDependencies.collect(project, dependencyConfiguration.get()) : []
+    }
+
+    /**
+     * Resolve the POMs of the dependencies that need them, like the {@link LicenseResolver} in the task action does.
+     *
+     * The license cache and the list of unresolved POMs are read through the providers, so the configuration cache
+     * entry is stored again when they change: when POMs were added to the cache, or could not be resolved.
+     */
+    protected Map<String, List<ArtifactCollection>> resolvePoms(Project project) {
+        if (!writesReports()) {
+            return [:]
+        }
+        String unresolved = project.providers.fileContents(unresolvedPoms).asText.getOrNull()
+        if (unresolved) {
+            logger.info("Resolving the POMs again that could not be resolved before: {}", unresolved.readLines())
+        }
+        Map<LicenseMetadata, List<Object>> aliases = resolvedAliases()
+        DependencyLicenseCache licenseCache = null
+        if (licenseCacheDir.present) {
+            licenseCache = new DependencyLicenseCache(licenseCacheDir.get().asFile,
+                    DependencyLicenseCache.fingerprint(aliases, ignoreFatalParseErrors.get()))
+            licenseCache.load(project.providers.fileContents(project.layout.file(project.provider { licenseCache.cacheFile })).asBytes.getOrNull())
+        }
+
+        ResolvedDependencies dependencies = resolvedDependencies()
+        long start = System.nanoTime()
+        ProjectPomResolver pomResolver = new ProjectPomResolver(project)
+        new LicenseResolver(dependencies: dependencies,
+                            pomResolver: pomResolver,
+                            ignoreFatalParseErrors: ignoreFatalParseErrors.get(),
+                            aliases: aliases,
+                            licenses: licenses.get(),
+                            licenseCache: licenseCache).resolveDependencyPoms()
+        timings().time("resolvePoms", start)
+        pomResolver.poms
+    }
+
+    protected ResolvedDependencies resolvedDependencies() {
+        if (resolvedDependencies == null) {
+            long start = System.nanoTime()
+            resolvedDependencies = ResolvedDependencies.resolve(projectDependencies.get(), includeProjectDependencies.get(),
+                    excludeDependencies.get())
+            timings().time("resolveDependencies", start)
         }
+        resolvedDependencies
+    }
+
+    /**
+     * One line for every artifact and file dependency, by the project it is reported for.
+     */
+    protected List<String> describeDependencies() {
+        List<String> artifacts = []
+        resolvedDependencies().artifacts.each { String p, Set<ResolvedDependencies.Artifact> projectArtifacts ->
+            projectArtifacts.each { artifacts.add("$p $it.dependencyDesc $it.fileName".toString()) }
+        }
+        artifacts + resolvedDependencies().fileDependencies.collect { "file $it".toString() }
+    }
+
+    /**
+     * Whether the last run resolved all POMs, and no dependency has a POM that may have changed since.
+     */
+    protected boolean resolvedAllPoms() {
+        !unresolvedPoms.get().asFile.exists() && resolvedDependencies().changing.isEmpty()
+    }
+
+    protected void rememberUnresolved(Set<String> unresolved) {
+        File file = unresolvedPoms.get().asFile
+        if (unresolved.isEmpty()) {
+            file.delete()
+        } else {
+            file.parentFile.mkdirs()
+            file.text = unresolved.join("\n") + "\n"
+        }
+    }
+
+    protected Map<LicenseMetadata, List<Object>> resolvedAliases() {
+        aliases.get().collectEntries { new MapEntry(resolveAliasKey(it.key), it.value) }
+    }
+
+    protected boolean writesReports() {
+        (reportByDependency.get() || reportByLicenseType.get()) && (xml.get() || html.get() || json.get())
+    }
 
-        // Generate report that groups licenses
-        if (isReportByLicenseType()) {
-            if(isHtml()) {
-                reporter().generateHTMLReport4LicenseToDependency(
-                        dependencyLicensesSet(), getReportByLicenseFileName() + ".html")
-            }
-            if( isXml()) {
-                reporter().generateXMLReport4LicenseToDependency(
-                        dependencyLicensesSet(), getReportByLicenseFileName() + ".xml")
-            }
-            if(isJson()) {
-                reporter().generateJSONReport4LicenseToDependency(
-                        dependencyLicensesSet(), getReportByLicenseFileName() + ".json")
-            }
+    protected Timings timings() {
+        if (timings == null) {
+            timings = new Timings(path, Timings.DEFAULT_SLOWEST)
         }
+        timings
     }
 
     LicenseMetadata resolveAliasKey(key) {
@@ -88,6 +88,12 @@ class DownloadLicensesExtension {
      */
     String dependencyConfiguration
 
+    /**
+     * Directory where the licenses found in the POMs of dependencies are kept between builds.
+     * No POM is resolved for a dependency that is in there, set to null to always resolve them.
+     */
+    File licenseCacheDir
+
     /**
      * Report extension.
      */
@@ -15,16 +15,31 @@
  */
 package nl.javadude.gradle.plugins.license
 
+import com.hierynomus.gradle.license.ChangedFiles
+import com.hierynomus.gradle.license.LicenseBatches
+import com.hierynomus.gradle.license.LicenseWorkers
+import com.hierynomus.gradle.license.Timings
 import com.mycila.maven.plugin.license.header.HeaderDefinition
 import nl.javadude.gradle.plugins.license.header.HeaderDefinitionBuilder
 import nl.javadude.gradle.plugins.license.maven.AbstractLicenseMojo
 import nl.javadude.gradle.plugins.license.maven.CallbackWithFailure
+import nl.javadude.gradle.plugins.license.maven.HeaderCheckCache
 import nl.javadude.gradle.plugins.license.maven.LicenseCheckMojo
 import nl.javadude.gradle.plugins.license.maven.LicenseFormatMojo
 import org.gradle.api.GradleException
 import org.gradle.api.NamedDomainObjectContainer
 import org.gradle.api.file.FileCollection
+import org.gradle.api.file.FileTree
+import org.gradle.api.file.FileType
+import org.gradle.api.file.RegularFile
+import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.*
+import org.gradle.process.ExecOperations
+import org.gradle.work.ChangeType
+import org.gradle.work.FileChange
+import org.gradle.work.InputChanges
+import org.gradle.workers.WorkerExecutor
 
 import javax.inject.Inject
 
@@ -37,6 +52,8 @@ import javax.inject.Inject
  * @author jryan
  */
 class License extends SourceTask implements VerificationTask {
+    static final String HEADER_CHECK_CACHE_FILE_NAME = "header-check.cache"
+
     /**
      * Whether or not to allow the build to continue if there are warnings.
      */
@@ -66,6 +83,23 @@ class License extends SourceTask implements VerificationTask {
 
     @Input boolean strictCheck
 
+    /**
+     * Number of bytes read from the start of a file to find the header, does not affect the outcome of a check
+     */
+    @Internal int scanBytes
+
+    /**
+     * Only process the files that git reports as changed since this ref, all files when not set
+     */
+    @Optional
+    @Input
+    final Property<String> changedSince = project.objects.property(String)
+
+    /**
+     * Whether a check stops at the first file that is missing a header
+     */
+    @Input final Property<Boolean> failFast = project.objects.property(Boolean)
+
     /**
      * The encoding used to open files
      */
@@ -73,6 +107,7 @@ class License extends SourceTask implements VerificationTask {
 
     @Optional
     @InputFile
+    @PathSensitive(PathSensitivity.NONE)
     File header
 
     /**
@@ -90,6 +125,7 @@ class License extends SourceTask implements VerificationTask {
     // Backing AbstraceLicenseMojo
     @Optional
     @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
     FileCollection validHeaders
 
     @Optional
@@ -104,20 +140,121 @@ class License extends SourceTask implements VerificationTask {
     @Nested
     NamedDomainObjectContainer<HeaderDefinitionBuilder> headerDefinitions
 
+    // SourceTask#getSource() returns a new FileTree on every call, which cannot be queried for incremental changes
+    private final FileCollection stableSources = getProject().files({
+        applyPatterns()
+        getSource()
+    })
+
+    // Everything the task action needs from the project, taken before it runs for the configuration cache
+    private final File rootDir = getProject().rootDir
+    private final File projectDir = getProject().projectDir
+    private final Provider<RegularFile> timingsReport = getProject().layout.buildDirectory.file("reports/license-timings/${name}.json")
+    private final Provider<RegularFile> checkReport = getProject().layout.buildDirectory.file("reports/license-check/${name}.txt")
+    private final Provider<Map<String, String>> variables = getProject().provider { combineVariables() }
+    private final Provider<List<HeaderDefinitionBuilder>> definitionBuilders = getProject().provider {
+        new ArrayList<HeaderDefinitionBuilder>(getHeaderDefinitions())
+    }
+    private final Provider<LicenseBatches> batches = LicenseBatches.of(getProject().gradle)
+
     @Inject
     @Deprecated
     License() {
+        usesService(batches)
+        notCachedWhenPartial()
     }
 
     License(boolean check) {
         this.check = check
+        usesService(batches)
+        notCachedWhenPartial()
     }
 
-    @TaskAction
-    protected void process() {
+    // Only a run over all files has an outcome that can be reused
+    protected void notCachedWhenPartial() {
+        outputs.doNotCacheIf("Only the changed files are checked, or the check stops at the first failure") { License task ->
+            task.changedSince.present || task.failFast.get()
+        }
+        // Which files changed is only known to git, not to the inputs of the task
+        outputs.upToDateWhen { License task -> !task.changedSince.present }
+    }
+
+    /**
+     * The files are checked and formatted on the workers of the build, shared with all other tasks
+     */
+    @Inject
+    protected WorkerExecutor getWorkerExecutor() {
+        throw new UnsupportedOperationException()
+    }
+
+    @Inject
+    protected ExecOperations getExecOperations() {
+        throw new UnsupportedOperationException()
+    }
+
+    @Override
+    @Internal
+    FileTree getSource() {
+        return super.getSource()
+    }
+
+    // Relative paths, so the outcome of a check can be taken from the build cache in another checkout
+    @SkipWhenEmpty
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @InputFiles
+    FileCollection getStableSources() {
+        return stableSources
+    }
+
+    /**
+     * The variables that are filled in the header, which change the outcome just like the header does
+     */
+    @Input
+    Map<String, String> getHeaderVariables() {
+        Map<String, String> headerVariables = new TreeMap<String, String>()
+        variables.get().each { key, value ->
+            headerVariables.put(String.valueOf(key), String.valueOf(value))
+        }
+        return headerVariables
+    }
+
+    /**
+     * The verdicts of a check, which an incremental run replays for the files that did not change. They only hold as
+     * long as no other run updated the execution history, so Gradle removes them when the outcome is taken from the
+     * build cache.
+     */
+    @LocalState
+    File getHeaderCheckCacheFile() {
+        return new File(getTemporaryDir(), HEADER_CHECK_CACHE_FILE_NAME)
+    }
+
+    /**
+     * The verdict of every checked file, only written by a check
+     */
+    @Optional
+    @OutputFile
+    File getReport() {
+        return isCheck() ? checkReport.get().asFile : null
+    }
+
+    /**
+     * Where the time of the last run went, the summary of which is printed
+     */
+    @OutputFile
+    File getTimingsFile() {
+        return timingsReport.get().asFile
+    }
+
+    protected void applyPatterns() {
         // Plain weird, but this ensures that the lazy closure from the extension is properly wired into the excludes field of the SourceTask.
         this.excludes = getExcludes()
         this.includes = getIncludes()
+    }
+
+    @TaskAction
+    protected void process(InputChanges inputChanges) {
+        applyPatterns()
 
         if (!enabled) {
             didWork = false
@@ -125,18 +262,59 @@ class License extends SourceTask implements VerificationTask {
         }
         CallbackWithFailure callback
         if (isCheck()) {
-            callback = new LicenseCheckMojo(getProject().rootDir, isSkipExistingHeaders())
+            callback = new LicenseCheckMojo(rootDir, isSkipExistingHeaders())
         } else {
-            callback = new LicenseFormatMojo(getProject().rootDir, isDryRun(), isSkipExistingHeaders())
+            callback = new LicenseFormatMojo(rootDir, isDryRun(), isSkipExistingHeaders())
         }
 
-        Map<String, String> initial = combineVariables()
+        Map<String, String> initial = variables.get()
         Map<String, String> combinedMappings = combinedMappings()
 
         URI uri = resolveURI()
 
-        new AbstractLicenseMojo(validHeaders, getProject().rootDir, initial, isDryRun(), isSkipExistingHeaders(), isUseDefaultMappings(), isStrictCheck(), uri, source, combinedMappings, getEncoding(), buildHeaderDefinitions())
-            .execute(callback)
+        Iterable<File> source = getStableSources()
+        boolean changedOnly = changedSince.present
+        if (changedOnly) {
+            Set<File> changed = ChangedFiles.since(getExecOperations(), projectDir, changedSince.get())
+            source = getStableSources().files.findAll { changed.contains(it.absoluteFile) }
+            logger.lifecycle("${source.size()} source files changed since ${changedSince.get()}")
+            // The next incremental run only sees the changes since this run, which did not check the other files
+            getHeaderCheckCacheFile().delete()
+        }
+
+        List<File> validHeaderFiles = getValidHeaders() == null ? [] : new ArrayList<File>(getValidHeaders().files)
+        def mojo = new AbstractLicenseMojo(validHeaderFiles, rootDir, initial, isDryRun(), isSkipExistingHeaders(), isUseDefaultMappings(), isStrictCheck(), uri, source, combinedMappings, getEncoding(), buildHeaderDefinitions())
+        mojo.setFailFast(failFast.get())
+        // The verdicts of a few files would replace those of all files
+        if (isCheck() && !changedOnly) {
+            // Also holds the verdicts of the files that are not checked again in an incremental run
+            mojo.headerCheckCache = new HeaderCheckCache(getHeaderCheckCacheFile())
+        }
+        mojo.setScanBytes(getScanBytes())
+        Timings timings = new Timings(path, Timings.DEFAULT_SLOWEST)
+        mojo.setTimings(timings)
+        mojo.setWorkers(new LicenseWorkers(getWorkerExecutor().noIsolation(), batches))
+        if (inputChanges.incremental && !changedOnly) {
+            List<File> changed = new ArrayList<File>()
+            List<File> removed = new ArrayList<File>()
+            inputChanges.getFileChanges(getStableSources()).each { FileChange change ->
+                if (change.fileType == FileType.DIRECTORY) {
+                    return
+                }
+                if (change.changeType == ChangeType.REMOVED) {
+                    removed.add(change.file)
+                } else {
+                    changed.add(change.file)
+                }
+            }
+            logger.info("Incremental license run: ${changed.size()} added or modified, ${removed.size()} removed files")
+            mojo.setIncrementalChanges(changed, removed)
+        }
+        mojo.execute(callback)
+        if (isCheck()) {
+            ((LicenseCheckMojo) callback).writeReport(getReport())
+        }
+        timings.report(getTimingsFile(), logger)
 
         altered = callback.getAffected()
         didWork = !altered.isEmpty()
@@ -147,6 +325,24 @@ class License extends SourceTask implements VerificationTask {
 
     }
 
+    /**
+     * Everything the verdicts of this check depend on next to the files, for checking the files of several tasks at once
+     */
+    @Internal
+    CheckSettings getCheckSettings() {
+        return new CheckSettings(
+                header: resolveURI(),
+                validHeaders: getValidHeaders() == null ? [] : new ArrayList<File>(getValidHeaders().files),
+                variables: variables.get(),
+                mappings: combinedMappings(),
+                headerDefinitions: definitionBuilders.get(),
+                encoding: getEncoding(),
+                useDefaultMappings: isUseDefaultMappings(),
+                strictCheck: isStrictCheck(),
+                skipExistingHeaders: isSkipExistingHeaders(),
+                scanBytes: getScanBytes())
+    }
+
     // Gradle thinks all getters should be associated with properties that must be annotated
     // renamed as @Internal is not available in Gradle 2.x
     URI resolveURI() {
@@ -159,7 +355,7 @@ class License extends SourceTask implements VerificationTask {
 
     // Setup up variables
     // Use properties on this task over the ones from the extension
-    private Map combineVariables() {
+    protected Map combineVariables() {
         Map<String, String> initial = new HashMap<String, String>()
         if (getInheritedProperties() != null ) { // Convention will pull these from the extension
             initial.putAll(getInheritedProperties())
@@ -192,7 +388,7 @@ class License extends SourceTask implements VerificationTask {
 
     List<HeaderDefinition> buildHeaderDefinitions() {
         List<HeaderDefinition> definitions = new ArrayList<>()
-        getHeaderDefinitions().all { headerDefinition ->
+        definitionBuilders.get().each { headerDefinition ->
             logger.debug("Adding extra header definition ${headerDefinition.toString()}")
             definitions.add(headerDefinition.build())
         }
@@ -200,7 +396,7 @@ class License extends SourceTask implements VerificationTask {
         return definitions
     }
 
-    @Internal
+    @Input
     Map<String, String> internalMappings = new HashMap<String, String>()
 
     void mapping(String fileType, String headerType) {
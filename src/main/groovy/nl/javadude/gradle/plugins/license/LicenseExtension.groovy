@@ -74,6 +74,23 @@ class LicenseExtension {
 
     boolean strictCheck
 
+    /**
+     * Number of bytes at the start of a file that are read to find the header. Longer headers make a check fall back
+     * to reading the file line by line.
+     */
+    int scanBytes
+
+    /**
+     * Only check or format the files that git reports as changed since this ref, all files when null. Defaults to the
+     * license.changedSince project property
+     */
+    String changedSince
+
+    /**
+     * Whether a check stops at the first file missing a header. Defaults to the license.failFast project property
+     */
+    boolean failFast
+
     /**
      * Additional header definitions
      */
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+/**
+ * Index over the configured licenses and license aliases, built once per run.
+ *
+ * Both the licenses and the aliases are matched in the order they are configured, the first match wins. Every key
+ * therefore remembers the position of the first entry it appears in, and when a lookup matches through more than
+ * one key the entry with the lowest position is used.
+ */
+class LicenseIndex {
+    private final Map<String, Position<Map.Entry>> licensesByDependency = [:]
+    private final Map<String, Position<Map.Entry>> licensesByGroup = [:]
+    private final Map<String, Position<LicenseMetadata>> aliasesByName = [:]
+    private final Map<LicenseMetadata, Position<LicenseMetadata>> aliasesByLicense = [:]
+
+    LicenseIndex(Map<Object, Object> licenses, Map<LicenseMetadata, List<Object>> aliases) {
+        int position = 0
+        licenses?.entrySet()?.each { Map.Entry entry ->
+            if (entry.key instanceof String) {
+                firstOnly(licensesByDependency, entry.key, new Position<Map.Entry>(position, entry))
+            } else if (entry.key instanceof DependencyGroup) {
+                firstOnly(licensesByGroup, entry.key.group, new Position<Map.Entry>(position, entry))
+            }
+            position++
+        }
+
+        position = 0
+        aliases?.each { LicenseMetadata canonical, List<Object> aliasList ->
+            aliasList?.each { aliasElem ->
+                if (aliasElem instanceof String) {
+                    firstOnly(aliasesByName, aliasElem, new Position<LicenseMetadata>(position, canonical))
+                } else if (aliasElem instanceof LicenseMetadata) {
+                    firstOnly(aliasesByLicense, aliasElem, new Position<LicenseMetadata>(position, canonical))
+                }
+            }
+            position++
+        }
+    }
+
+    /**
+     * The first configured license for a dependency, either by its description or by its group.
+     *
+     * @return the entry of the licenses map, or null when there is none
+     */
+    Map.Entry findLicense(String group, String dependencyDesc) {
+        first(licensesByDependency[dependencyDesc], licensesByGroup[group])
+    }
+
+    /**
+     * The license that the first matching alias maps the license to.
+     *
+     * @return the aliased license, or the license itself when no alias matches
+     */
+    LicenseMetadata resolveAlias(LicenseMetadata license) {
+        first(aliasesByName[license.licenseName], aliasesByLicense[license]) ?: license
+    }
+
+    private static <K, V> void firstOnly(Map<K, Position<V>> index, K key, Position<V> position) {
+        if (!index.containsKey(key)) {
+            index[key] = position
+        }
+    }
+
+    private static <V> V first(Position<V> a, Position<V> b) {
+        if (a == null || (b != null && b.position < a.position)) {
+            return b?.value
+        }
+        a.value
+    }
+
+    private static class Position<V> {
+        final int position
+        final V value
+
+        Position(int position, V value) {
+            this.position = position
+            this.value = value
+        }
+    }
+}
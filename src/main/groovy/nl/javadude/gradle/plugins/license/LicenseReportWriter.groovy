@@ -0,0 +1,334 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import groovy.json.JsonOutput
+import groovy.xml.XmlUtil
+
+/**
+ * Writes a license report while the dependencies or licenses are handed to it, instead of building the whole
+ * document in memory first.
+ */
+abstract class LicenseReportWriter implements Closeable {
+
+    protected final Writer writer
+
+    protected LicenseReportWriter(File file) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))
+    }
+
+    static LicenseReportWriter xml(File file) {
+        new Xml(file)
+    }
+
+    static LicenseReportWriter html(File file) {
+        new Html(file)
+    }
+
+    static LicenseReportWriter json(File file) {
+        new Json(file)
+    }
+
+    /**
+     * Start a report grouping by dependencies.
+     */
+    abstract void startDependencies()
+
+    abstract void dependency(DependencyMetadata dependency)
+
+    abstract void endDependencies()
+
+    /**
+     * Start a report grouping by licenses.
+     */
+    abstract void startLicenses()
+
+    abstract void license(LicenseMetadata license, Collection<String> dependencies)
+
+    abstract void endLicenses()
+
+    @Override
+    void close() {
+        writer.close()
+    }
+
+    protected static String escapeXml(String value) {
+        value == null ? "" : XmlUtil.escapeXml(value)
+    }
+
+    private static class Xml extends LicenseReportWriter {
+        Xml(File file) {
+            super(file)
+        }
+
+        @Override
+        void startDependencies() {
+            writer.write("<dependencies>\n")
+        }
+
+        @Override
+        void dependency(DependencyMetadata dependency) {
+            writer.write("  <dependency name='${escapeXml(dependency.dependency)}'>\n")
+            writer.write("    <file>${escapeXml(dependency.dependencyFileName)}</file>\n")
+            dependency.licenseMetadataList.each { LicenseMetadata l ->
+                writer.write("    <license name='${escapeXml(l.licenseName)}'")
+                // Miss attribute if it's empty
+                if (l.licenseTextUrl) {
+                    writer.write(" url='${escapeXml(l.licenseTextUrl)}'")
+                }
+                writer.write(" />\n")
+            }
+            writer.write("  </dependency>\n")
+        }
+
+        @Override
+        void endDependencies() {
+            writer.write("</dependencies>")
+        }
+
+        @Override
+        void startLicenses() {
+            writer.write("<licenses>\n")
+        }
+
+        @Override
+        void license(LicenseMetadata license, Collection<String> dependencies) {
+            writer.write("  <license name='${escapeXml(license.licenseName)}'")
+            // Miss attribute if it's empty
+            if (license.licenseTextUrl) {
+                writer.write(" url='${escapeXml(license.licenseTextUrl)}'")
+            }
+            writer.write(">\n")
+            dependencies.each { String d ->
+                writer.write("    <dependency>${escapeXml(d)}</dependency>\n")
+            }
+            writer.write("  </license>\n")
+        }
+
+        @Override
+        void endLicenses() {
+            writer.write("</licenses>")
+        }
+    }
+
+    private static class Html extends LicenseReportWriter {
+        private static final String STYLE_BY_DEPENDENCY = '''table {
+                  width: 85%;
+                  border-collapse: collapse;
+                  text-align: center;
+                }
+                .dependencies {
+                  text-align: left;
+                }
+                tr {
+                  border: 1px solid black;
+                }
+                td {
+                  border: 1px solid black;
+                  font-weight: bold;
+                  color: #2E2E2E
+                }
+                th {
+                  border: 1px solid black;
+                }
+                h3 {
+                  text-align:center;
+                  margin:3px
+                }
+                .license {
+                    width:70%
+                }
+
+                .licenseName {
+                    width:15%
+                }
+                '''
+
+        private static final String STYLE_BY_LICENSE = '''table {
+                  width: 85%;
+                  border-collapse: collapse;
+                  text-align: center;
+                }
+
+                .dependencies {
+                  text-align: left;
+                  width:15%;
+                }
+
+                tr {
+                  border: 1px solid black;
+                }
+
+                td {
+                  border: 1px solid black;
+                  font-weight: bold;
+                  color: #2E2E2E
+                }
+
+                th {
+                  border: 1px solid black;
+                }
+
+                h3 {
+                  text-align:center;
+                  margin:3px
+                }
+
+                .license {
+                    width:70%
+                }
+
+                .licenseName {
+                    width:15%
+                }
+                '''
+
+        Html(File file) {
+            super(file)
+        }
+
+        private void start(String style, List<String> headers) {
+            writer.write("<html>\n  <head>\n    <title>HTML License report</title>\n  </head>\n")
+            writer.write("  <style>${escapeXml(style)}</style>\n")
+            writer.write("  <body>\n    <table align='center'>\n      <tr>\n")
+            headers.each { String h ->
+                writer.write("        <th>\n          <h3>${escapeXml(h)}</h3>\n        </th>\n")
+            }
+            writer.write("      </tr>\n")
+        }
+
+        private void end() {
+            writer.write("    </table>\n  </body>\n</html>")
+        }
+
+        @Override
+        void startDependencies() {
+            start(STYLE_BY_DEPENDENCY, ["Dependency", "Jar", "License name", "License text URL"])
+        }
+
+        @Override
+        void dependency(DependencyMetadata dependency) {
+            dependency.licenseMetadataList.each { LicenseMetadata license ->
+                writer.write("      <tr>\n")
+                writer.write("        <td class='dependencies'>${escapeXml(dependency.dependency)}</td>\n")
+                writer.write("        <td class='licenseName'>${escapeXml(dependency.dependencyFileName)}</td>\n")
+                writer.write("        <td class='licenseName'>${escapeXml(license.licenseName)}</td>\n")
+                writer.write("        <td class='license'>")
+                if (license.licenseTextUrl) {
+                    writer.write("\n          <a href='${escapeXml(license.licenseTextUrl)}'>Show license agreement</a>\n        ")
+                }
+                writer.write("</td>\n      </tr>\n")
+            }
+        }
+
+        @Override
+        void endDependencies() {
+            end()
+        }
+
+        @Override
+        void startLicenses() {
+            start(STYLE_BY_LICENSE, ["License", "License text URL", "Dependency"])
+        }
+
+        @Override
+        void license(LicenseMetadata license, Collection<String> dependencies) {
+            writer.write("      <tr>\n")
+            writer.write("        <td class='licenseName'>${escapeXml(license.licenseName)}</td>\n")
+            writer.write("        <td class='license'>")
+            if (license.licenseTextUrl) {
+                writer.write("\n          <a href='${escapeXml(license.licenseTextUrl)}'>License agreement</a>\n        ")
+            }
+            writer.write("</td>\n")
+            writer.write("        <td class='dependencies'>\n          <ul>\n")
+            dependencies.each { String d ->
+                writer.write("            <li>${escapeXml(d)}</li>\n")
+            }
+            writer.write("          </ul>\n        </td>\n      </tr>\n")
+        }
+
+        @Override
+        void endLicenses() {
+            end()
+        }
+    }
+
+    private static class Json extends LicenseReportWriter {
+        private boolean first
+
+        Json(File file) {
+            super(file)
+        }
+
+        private void separate() {
+            if (!first) {
+                writer.write(",")
+            }
+            first = false
+        }
+
+        @Override
+        void startDependencies() {
+            writer.write('{"dependencies":[')
+            first = true
+        }
+
+        @Override
+        void dependency(DependencyMetadata dependency) {
+            separate()
+            writer.write('{"name":' + JsonOutput.toJson(dependency.dependency))
+            writer.write(',"file":' + JsonOutput.toJson(dependency.dependencyFileName))
+            writer.write(',"licenses":[')
+            dependency.licenseMetadataList.eachWithIndex { LicenseMetadata l, int i ->
+                if (i > 0) {
+                    writer.write(",")
+                }
+                writer.write('{"name":' + JsonOutput.toJson(l.licenseName) + ',"url":' + JsonOutput.toJson(l.licenseTextUrl) + '}')
+            }
+            writer.write("]}")
+        }
+
+        @Override
+        void endDependencies() {
+            writer.write("]}")
+        }
+
+        @Override
+        void startLicenses() {
+            writer.write('{"licences":[')
+            first = true
+        }
+
+        @Override
+        void license(LicenseMetadata license, Collection<String> dependencies) {
+            separate()
+            writer.write('{"name":' + JsonOutput.toJson(license.licenseName) + ',"url":' + JsonOutput.toJson(license.licenseTextUrl))
+            writer.write(',"dependencies":[')
+            dependencies.eachWithIndex { String d, int i ->
+                if (i > 0) {
+                    writer.write(",")
+                }
+                writer.write(JsonOutput.toJson(d))
+            }
+            writer.write("]}")
+        }
+
+        @Override
+        void endLicenses() {
+            writer.write("]}")
+        }
+    }
+}
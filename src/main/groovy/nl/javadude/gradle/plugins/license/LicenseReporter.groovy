@@ -15,9 +15,6 @@
  */
 package nl.javadude.gradle.plugins.license
 
-import groovy.xml.MarkupBuilder
-import groovy.json.*
-
 /**
  * License file reporter.
  */
@@ -39,37 +36,55 @@ class LicenseReporter {
     File jsonOutputDir
 
     /**
-     * Generate xml report grouping by dependencies.
+     * Generate all requested reports with a single pass over the dependencies. The reports grouping by dependency are
+     * written while the licenses are collected, the reports grouping by license are written from those afterwards.
      *
      * @param dependencyMetadataSet set with dependencies
-     * @param fileName report file name
+     * @param byDependencyFileName report file name without extension for reports by dependency, or null for none
+     * @param byLicenseFileName report file name without extension for reports by license, or null for none
      */
-    public void generateXMLReport4DependencyToLicense(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        new File(xmlOutputDir, fileName).withPrintWriter { writer ->
-            MarkupBuilder xml = new MarkupBuilder(writer)
-
-            xml.dependencies() {
-                dependencyMetadataSet.each {
-                    entry ->
-                        dependency(name: entry.dependency) {
-                            file(entry.dependencyFileName)
-                            entry.licenseMetadataList.each {
-                                l ->
-                                    def attributes = [name: l.licenseName]
-
-                                    // Miss attribute if it's empty
-                                    if (l.licenseTextUrl) {
-                                        attributes << [url: l.licenseTextUrl]
-                                    }
-
-                                    license(attributes)
-                            }
-                        }
+    public void generateReports(Set<DependencyMetadata> dependencyMetadataSet, String byDependencyFileName, String byLicenseFileName,
+                                boolean xml, boolean html, boolean json) {
+        List<LicenseReportWriter> byDependency = byDependencyFileName == null ? [] : writers(byDependencyFileName, xml, html, json)
+        List<LicenseReportWriter> byLicense = []
+        try {
+            byDependency*.startDependencies()
+            Map<LicenseMetadata, Set<String>> licensesMap = new HashMap<LicenseMetadata, Set<String>>()
+            dependencyMetadataSet.each { DependencyMetadata dependencyMetadata ->
+                for (LicenseReportWriter writer : byDependency) {
+                    writer.dependency(dependencyMetadata)
+                }
+                if (byLicenseFileName != null) {
+                    addLicenses(licensesMap, dependencyMetadata)
                 }
             }
+            byDependency*.endDependencies()
+
+            if (byLicenseFileName != null) {
+                byLicense = writers(byLicenseFileName, xml, html, json)
+                byLicense*.startLicenses()
+                licensesMap.each { LicenseMetadata license, Set<String> dependencies ->
+                    for (LicenseReportWriter writer : byLicense) {
+                        writer.license(license, dependencies)
+                    }
+                }
+                byLicense*.endLicenses()
+            }
+        } finally {
+            (byDependency + byLicense).each { it.close() }
         }
     }
 
+    /**
+     * Generate xml report grouping by dependencies.
+     *
+     * @param dependencyMetadataSet set with dependencies
+     * @param fileName report file name
+     */
+    public void generateXMLReport4DependencyToLicense(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
+        writeByDependency(LicenseReportWriter.xml(new File(xmlOutputDir, fileName)), dependencyMetadataSet)
+    }
+
     /**
      * Generate xml report grouping by licenses.
      *
@@ -77,27 +92,7 @@ class LicenseReporter {
      * @param fileName report file name
      */
     public void generateXMLReport4LicenseToDependency(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        new File(xmlOutputDir, fileName).withPrintWriter { writer ->
-            MarkupBuilder xml = new MarkupBuilder(writer)
-            Map<LicenseMetadata, Set<String>> licensesMap = getLicenseMap(dependencyMetadataSet)
-
-            xml.licenses() {
-                licensesMap.each {
-                    entry ->
-                        def attributes = [name: entry.key.licenseName]
-
-                        // Miss attribute if it's empty
-                        if(entry.key.licenseTextUrl) {
-                            attributes << [url:  entry.key.licenseTextUrl]
-                        }
-                        license(attributes) {
-                            entry.value.each {
-                                d -> dependency(d)
-                            }
-                        }
-                }
-            }
-        }
+        writeByLicense(LicenseReportWriter.xml(new File(xmlOutputDir, fileName)), dependencyMetadataSet)
     }
 
     /**
@@ -107,27 +102,7 @@ class LicenseReporter {
      * @param fileName report file name
      */
     public void generateJSONReport4DependencyToLicense(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        def json = new JsonBuilder();
-
-        json {
-            dependencies dependencyMetadataSet.collect {
-                entry ->
-                    return [
-                        name: entry.dependency,
-                        file: entry.dependencyFileName,
-                        licenses: entry.licenseMetadataList.collect {
-                            l -> return [
-                                name: l.licenseName,
-                                url: l.licenseTextUrl
-                            ]
-                        }
-                    ]
-            }
-        }
-
-        new File(jsonOutputDir, fileName).withWriter { fw ->
-            json.writeTo(fw)
-        }
+        writeByDependency(LicenseReportWriter.json(new File(jsonOutputDir, fileName)), dependencyMetadataSet)
     }
 
     /**
@@ -137,22 +112,7 @@ class LicenseReporter {
      * @param fileName report file name
      */
     public void generateJSONReport4LicenseToDependency(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        def json = new JsonBuilder();
-        Map<LicenseMetadata, Set<String>> licensesMap = getLicenseMap(dependencyMetadataSet)
-
-        json{
-            licences licensesMap.collect {
-                key, value ->
-                    return [
-                        name: key.licenseName,
-                        url: key.licenseTextUrl,
-                        dependencies: value
-                    ]
-            }
-        }
-        new File(jsonOutputDir, fileName).withWriter { fw ->
-            json.writeTo(fw)
-        }
+        writeByLicense(LicenseReportWriter.json(new File(jsonOutputDir, fileName)), dependencyMetadataSet)
     }
 
     /**
@@ -162,73 +122,7 @@ class LicenseReporter {
      * @param fileName report file name
      */
     public void generateHTMLReport4DependencyToLicense(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        new File(htmlOutputDir, fileName).withPrintWriter { writer ->
-            MarkupBuilder html = new MarkupBuilder(writer)
-
-            html.html {
-                head {
-                    title("HTML License report")
-                }
-                style(
-                        '''table {
-                  width: 85%;
-                  border-collapse: collapse;
-                  text-align: center;
-                }
-                .dependencies {
-                  text-align: left;
-                }
-                tr {
-                  border: 1px solid black;
-                }
-                td {
-                  border: 1px solid black;
-                  font-weight: bold;
-                  color: #2E2E2E
-                }
-                th {
-                  border: 1px solid black;
-                }
-                h3 {
-                  text-align:center;
-                  margin:3px
-                }
-                .license {
-                    width:70%
-                }
-
-                .licenseName {
-                    width:15%
-                }
-                ''')
-                body {
-                    table(align: 'center') {
-                        tr {
-                            th(){ h3("Dependency") }
-                            th(){ h3("Jar") }
-                            th(){ h3("License name") }
-                            th(){ h3("License text URL") }
-                        }
-
-                        dependencyMetadataSet.each {
-                            entry ->
-                                entry.licenseMetadataList.each { license ->
-                                    tr {
-                                        td(entry.dependency, class: 'dependencies')
-                                        td(entry.dependencyFileName, class: 'licenseName')
-                                        td(license.licenseName, class: 'licenseName')
-                                        td(class: 'license') {
-                                            if (license.licenseTextUrl) {
-                                                a(href: license.licenseTextUrl, "Show license agreement")
-                                            }
-                                        }
-                                    }
-                                }
-                        }
-                    }
-                }
-            }
-        }
+        writeByDependency(LicenseReportWriter.html(new File(htmlOutputDir, fileName)), dependencyMetadataSet)
     }
 
     /**
@@ -238,100 +132,57 @@ class LicenseReporter {
      * @param fileName report file name
      */
     public void generateHTMLReport4LicenseToDependency(Set<DependencyMetadata> dependencyMetadataSet, String fileName) {
-        new File(htmlOutputDir, fileName).withPrintWriter { writer ->
-            MarkupBuilder html = new MarkupBuilder(writer)
-            Map<LicenseMetadata, Set<String>> licensesMap = getLicenseMap(dependencyMetadataSet)
-
-            html.html {
-                head {
-                    title("HTML License report")
-                }
-                style(
-                        '''table {
-                  width: 85%;
-                  border-collapse: collapse;
-                  text-align: center;
-                }
-
-                .dependencies {
-                  text-align: left;
-                  width:15%;
-                }
-
-                tr {
-                  border: 1px solid black;
-                }
-
-                td {
-                  border: 1px solid black;
-                  font-weight: bold;
-                  color: #2E2E2E
-                }
-
-                th {
-                  border: 1px solid black;
-                }
-
-                h3 {
-                  text-align:center;
-                  margin:3px
-                }
-
-                .license {
-                    width:70%
-                }
-
-                .licenseName {
-                    width:15%
-                }
-                ''')
-                body {
-                    table(align: 'center') {
-                        tr {
-                            th(){ h3("License") }
-                            th(){ h3("License text URL") }
-                            th(){ h3("Dependency") }
-                        }
+        writeByLicense(LicenseReportWriter.html(new File(htmlOutputDir, fileName)), dependencyMetadataSet)
+    }
 
-                        licensesMap.each {
-                            entry ->
-                                tr {
-                                    td(entry.key.licenseName, class: 'licenseName')
-                                    td(class: 'license') {
-                                        if (entry.key.licenseTextUrl) {
-                                            a(href: entry.key.licenseTextUrl, "License agreement")
-                                        }
-                                    }
-                                    td(class: "dependencies") {
-                                        ul() {
-                                            entry.value.each {
-                                                dependency ->
-                                                    li(dependency)
-                                            }
-                                        }
-                                    }
-                                }
-                        }
-                    }
-                }
+    // Utility
+    private List<LicenseReportWriter> writers(String fileName, boolean xml, boolean html, boolean json) {
+        List<LicenseReportWriter> writers = []
+        try {
+            if (html) {
+                writers << LicenseReportWriter.html(new File(htmlOutputDir, fileName + ".html"))
+            }
+            if (xml) {
+                writers << LicenseReportWriter.xml(new File(xmlOutputDir, fileName + ".xml"))
+            }
+            if (json) {
+                writers << LicenseReportWriter.json(new File(jsonOutputDir, fileName + ".json"))
             }
+        } catch (IOException e) {
+            writers.each { it.close() }
+            throw e
         }
+        writers
     }
 
-    // Utility
-    private Map<LicenseMetadata, Set<String>> getLicenseMap(Set<DependencyMetadata> dependencyMetadataSet) {
-        Map<LicenseMetadata, Set<String>> licensesMap = new HashMap<LicenseMetadata, Set<String>>()
+    private static void writeByDependency(LicenseReportWriter writer, Set<DependencyMetadata> dependencyMetadataSet) {
+        writer.withCloseable {
+            writer.startDependencies()
+            dependencyMetadataSet.each { writer.dependency(it) }
+            writer.endDependencies()
+        }
+    }
 
-        dependencyMetadataSet.each {
-            dependencyMetadata ->
-                dependencyMetadata.licenseMetadataList.each { license ->
-                    if (!licensesMap.containsKey(license)) {
-                        licensesMap.put(license, new HashSet<String>())
-                    }
-                    licensesMap.get(license).add(dependencyMetadata.dependencyFileName)
-                }
+    private static void writeByLicense(LicenseReportWriter writer, Set<DependencyMetadata> dependencyMetadataSet) {
+        writer.withCloseable {
+            writer.startLicenses()
+            getLicenseMap(dependencyMetadataSet).each { license, dependencies -> writer.license(license, dependencies) }
+            writer.endLicenses()
         }
+    }
 
+    private static Map<LicenseMetadata, Set<String>> getLicenseMap(Set<DependencyMetadata> dependencyMetadataSet) {
+        Map<LicenseMetadata, Set<String>> licensesMap = new HashMap<LicenseMetadata, Set<String>>()
+        dependencyMetadataSet.each { addLicenses(licensesMap, it) }
         licensesMap
     }
+
+    private static void addLicenses(Map<LicenseMetadata, Set<String>> licensesMap, DependencyMetadata dependencyMetadata) {
+        dependencyMetadata.licenseMetadataList.each { license ->
+            if (!licensesMap.containsKey(license)) {
+                licensesMap.put(license, new HashSet<String>())
+            }
+            licensesMap.get(license).add(dependencyMetadata.dependencyFileName)
+        }
+    }
 }
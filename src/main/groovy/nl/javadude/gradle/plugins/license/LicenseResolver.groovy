@@ -15,16 +15,18 @@
  */
 package nl.javadude.gradle.plugins.license
 
-import groovy.util.slurpersupport.GPathResult
-import org.gradle.api.Project
-import org.gradle.api.artifacts.Configuration
-import org.gradle.api.artifacts.Dependency
-import org.gradle.api.artifacts.FileCollectionDependency
-import org.gradle.api.artifacts.ResolvedArtifact
+import com.hierynomus.gradle.license.Timings
+import nl.javadude.gradle.plugins.license.ResolvedDependencies.Artifact
 import org.gradle.api.logging.Logger
 import org.gradle.api.logging.Logging
 
-import java.util.regex.Pattern
+import javax.xml.stream.XMLStreamException
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 import static DependencyMetadata.noLicenseMetaData
 /**
@@ -35,15 +37,38 @@ class LicenseResolver {
     private static final Logger logger = Logging.getLogger(LicenseResolver);
 
     /**
-     * Reference to gradle project.
+     * The dependencies to find the licenses of, resolved from the projects up front.
      */
-    private Project project
+    private ResolvedDependencies dependencies
+
+    /**
+     * Looks up the POMs of the dependencies, and of their parents.
+     */
+    private PomResolver pomResolver
     private Map<Object, Object> licenses
     private Map<LicenseMetadata, List<Object>> aliases
-    private boolean includeProjectDependencies
-    private String dependencyConfiguration
     private boolean ignoreFatalParseErrors
-    private List<Pattern> patternsToIgnore
+    private LicenseIndex index
+
+    /**
+     * Directory of the licenses found in the POMs of earlier builds, not used when null.
+     */
+    private File licenseCacheDir
+
+    /**
+     * The licenses found in the POMs of earlier builds, loaded from the {@link #licenseCacheDir} when not given.
+     */
+    private DependencyLicenseCache licenseCache
+
+    /**
+     * Records the dependencies and POMs handled, the time spent resolving and parsing, and the slowest POMs.
+     */
+    private Timings timings = new Timings("licenses", 0)
+
+    /**
+     * The POMs read so far by dependency description, shared by all dependencies that have the same parent.
+     */
+    private final Map<String, PomLicenses> poms = new ConcurrentHashMap<String, PomLicenses>()
 
     /**
      * Provide set with dependencies metadata.
@@ -54,262 +79,245 @@ class LicenseResolver {
      * @return set with licenses
      */
     public Set<DependencyMetadata> provideLicenseMap4Dependencies() {
+        resolveDependencyPoms()
         Set<DependencyMetadata> licenseSet = new HashSet<DependencyMetadata>()
-        def subprojects = project.rootProject.subprojects.groupBy { Project p -> "$p.group:$p.name:$p.version".toString()}
-        project.logger.info("Found subprojects: $subprojects")
-
-        Set<Project> projects = new HashSet<Project>()
-        projects.add(project)
-        projects.addAll(project.subprojects)
+        Set<String> subprojects = dependencies.subprojects
 
-        projects.each {
-            p ->
+        dependencies.artifacts.each { String p, Set<Artifact> artifacts ->
 
             // Resolve each dependency
-            resolveProjectDependencies(p).each {
+            artifacts.each {
                 rd ->
-                String dependencyDesc = "$rd.moduleVersion.id.group:$rd.moduleVersion.id.name:$rd.moduleVersion.id.version".toString()
-                Map.Entry licenseEntry = licenses.find {
-                    dep ->
-                    if(dep.key instanceof String) {
-                        dep.key == dependencyDesc
-                    } else if (dep.key instanceof DependencyGroup) {
-                        rd.moduleVersion.id.group == dep.key.group
-                    }
-                }
+                String dependencyDesc = rd.dependencyDesc
+                Map.Entry licenseEntry = findLicenseEntry(rd, dependencyDesc)
                 if (licenseEntry != null) {
                     def license = licenseEntry.value
                     def licenseMetadata = license instanceof String ? DownloadLicensesExtension.license(license) : license
                     licenseSet << new DependencyMetadata(
-                            dependency: dependencyDesc, dependencyFileName: rd.file.name, licenseMetadataList: [ licenseMetadata ]
+                            dependency: dependencyDesc, dependencyFileName: rd.fileName, licenseMetadataList: [ licenseMetadata ]
                     )
                 } else {
                     Closure<DependencyMetadata> dependencyMetadata = {
-                        if(!subprojects[dependencyDesc]) {
-                            def depMetadata = retrieveLicensesForDependency(p, dependencyDesc)
-                            depMetadata.dependencyFileName = rd.file.name
+                        if(!subprojects.contains(dependencyDesc)) {
+                            def depMetadata = retrieveLicensesForDependency(dependencyDesc)
+                            depMetadata.dependencyFileName = rd.fileName
                             depMetadata
                         } else {
-                            noLicenseMetaData(dependencyDesc, rd.file.name)
+                            noLicenseMetaData(dependencyDesc, rd.fileName)
                         }
                     }
 
                     licenseSet << dependencyMetadata()
                 }
             }
+        }
 
-            provideFileDependencies(p).each {
-                fileDependency ->
-                    Closure<DependencyMetadata> licenseMetadata = {
-                        if (licenses.containsKey(fileDependency)) {
-                            def license = licenses[fileDependency]
-                            LicenseMetadata licenseMetadata = license instanceof String ? DownloadLicensesExtension.license(license) : license
-                            def alias = aliases.find {
-                                aliasEntry ->
-                                    aliasEntry.value.any {
-                                        aliasElem ->
-                                            if (aliasElem instanceof String) {
-                                                return aliasElem == licenseMetadata.licenseName
-                                            } else if(aliasElem instanceof LicenseMetadata) {
-                                                return aliasElem == licenseMetadata
-                                            }
-
-                                    }
-                            }
-                            if (alias) {
-                                licenseMetadata = alias.key
-                            }
-                            new DependencyMetadata(dependency: fileDependency, dependencyFileName: fileDependency, licenseMetadataList: [licenseMetadata])
-                        } else {
-                            noLicenseMetaData(fileDependency, fileDependency)
-                        }
+        dependencies.fileDependencies.each {
+            fileDependency ->
+                Closure<DependencyMetadata> licenseMetadata = {
+                    if (licenses.containsKey(fileDependency)) {
+                        def license = licenses[fileDependency]
+                        LicenseMetadata licenseMetadata = license instanceof String ? DownloadLicensesExtension.license(license) : license
+                        licenseMetadata = index.resolveAlias(licenseMetadata)
+                        new DependencyMetadata(dependency: fileDependency, dependencyFileName: fileDependency, licenseMetadataList: [licenseMetadata])
+                    } else {
+                        noLicenseMetaData(fileDependency, fileDependency)
                     }
+                }
 
-                    licenseSet << licenseMetadata()
-            }
+                licenseSet << licenseMetadata()
         }
 
+        licenseCache?.save()
+        timings.count("dependencies", licenseSet.size())
         licenseSet
     }
 
-    Set<ResolvedArtifact> resolveProjectDependencies(Project project) {
-        resolveProjectDependencies(project, new HashSet<Project>())
-    }
-
     /**
-     * Provide full list of resolved artifacts to handle for a given project.
-     *
-     * @param project                       the project
-     * @return Set with resolved artifacts
+     * Resolve the POMs of all dependencies without a configured or a cached license up front, so they are resolved in
+     * batches. {@link #provideLicenseMap4Dependencies} starts with this.
      */
-    Set<ResolvedArtifact> resolveProjectDependencies(Project project, HashSet<Project> subprojectsAlreadyScanned) {
-
-        Set<ResolvedArtifact> dependenciesToHandle = new HashSet<ResolvedArtifact>()
-        def subprojects = project.rootProject.subprojects.groupBy { Project p -> "$p.group:$p.name:$p.version".toString()}
-
-        project.configurations.each { c ->
-            project.logger.info("Project $project -> Configuration $c (can be resolved? ${c.isCanBeResolved()})")
-            if (c.name == dependencyConfiguration && isResolvable(c)) {
-                project.logger.debug("Resolvable $c in project $project")
-                c.resolvedConfiguration.resolvedArtifacts.each { ResolvedArtifact d ->
-                    String dependencyDesc = "$d.moduleVersion.id.group:$d.moduleVersion.id.name:$d.moduleVersion.id.version".toString()
-                    if(isDependencyIncluded(dependencyDesc)) {
-                        Project subproject = subprojects[dependencyDesc]?.first()
-                        if (subproject && !subprojectsAlreadyScanned.contains(subproject)) {
-                            subprojectsAlreadyScanned.add(subproject)
-                            if(includeProjectDependencies) {
-                                dependenciesToHandle.add(d)
-                            }
-                            dependenciesToHandle.addAll(resolveProjectDependencies(subproject, subprojectsAlreadyScanned))
-                        } else if (!subproject) {
-                            dependenciesToHandle.add(d)
-                        }
-                    }
-                }
-            }
+    void resolveDependencyPoms() {
+        index = new LicenseIndex(licenses, aliases)
+        if (licenseCache == null && licenseCacheDir != null) {
+            licenseCache = new DependencyLicenseCache(licenseCacheDir, DependencyLicenseCache.fingerprint(aliases, ignoreFatalParseErrors))
+            licenseCache.load()
         }
 
-        logger.debug("Project $project.name found ${dependenciesToHandle.size()} dependencies to handle.")
-        dependenciesToHandle
-    }
-
-    Set<String> provideFileDependencies(Project project) {
-        Set<String> fileDependencies = new HashSet<String>()
-
-        if (project.configurations.any { it.name == dependencyConfiguration }) {
-            Configuration configuration = project.configurations.getByName(dependencyConfiguration)
-
-            Set<Dependency> d = configuration.allDependencies.findAll {
-                it instanceof FileCollectionDependency
-            }
-
-            d.each {
-                FileCollectionDependency fileDependency ->
-                    fileDependency.resolve().each {
-                        if (isDependencyIncluded(it.name)) {
-                            fileDependencies.add(it.name)
-                        }
-                    }
+        Map<String, Set<String>> pomsToResolve = [:]
+        Set<String> seen = new HashSet<String>()
+        dependencies.artifacts.each { String p, Set<Artifact> artifacts ->
+            artifacts.each { rd ->
+                String dependencyDesc = rd.dependencyDesc
+                if (findLicenseEntry(rd, dependencyDesc) != null || dependencies.subprojects.contains(dependencyDesc) || !seen.add(dependencyDesc)) {
+                    return
+                }
+                if (cacheFor(dependencyDesc)?.get(dependencyDesc) != null) {
+                    timings.count("cached", 1)
+                } else {
+                    pomsToResolve.get(p, new LinkedHashSet<String>()).add(dependencyDesc)
+                }
             }
-
         }
-
-        logger.debug("Project $project.name found ${fileDependencies.size()} file dependencies to handle.")
-        fileDependencies
+        pomsToResolve.each { String p, Set<String> pending -> resolvePoms(p, pending) }
     }
 
     /**
-     * Since Gradle 3.4, configurations can be marked as not resolvable by default.
-     * Configuration#isCanBeResolved() from Gradle 3.3 can be used to check that.
-     * @param conf Configuration
-     * @return whether conf is resolvable
-     *
-     * @see <a href="https://docs.gradle.org/3.4/release-notes.html#configurations-can-be-unresolvable">Gradle 3.4 release notes</a>
+     * @return the dependencies and parents, in group:name:version form, whose POM could not be resolved
      */
-    boolean isResolvable(Configuration conf) {
-        return conf.metaClass.respondsTo(conf, "isCanBeResolved") ? conf.isCanBeResolved() : true
+    Set<String> getUnresolvedPoms() {
+        new TreeSet<String>(poms.findAll { it.value.is(PomLicenses.UNRESOLVED) }.keySet())
     }
 
-    boolean isDependencyIncluded(String depName){
-        for(Pattern pattern: this.patternsToIgnore){
-            if(pattern.matcher(depName).matches()){
-                return false;
-            }
-        }
-        return true;
+    private Map.Entry findLicenseEntry(Artifact rd, String dependencyDesc) {
+        index.findLicense(rd.group, dependencyDesc)
     }
 
-
     /**
-     * Recursive function for retrieving licenses via creating
-     * and resolving detached configuration with "pom" extension.
+     * Resolve and parse the POMs of the dependencies, followed by the POMs of their parents until a license is found.
      *
-     * If no license was found in pom, we try to find it in parent pom declaration.
-     * Parent pom descriptors are resolved in recursive way until we have no parent.
+     * Every level of parents is resolved in batches by the {@link #pomResolver}, a batch holds one version of
+     * every module as the versions would otherwise conflict. The POMs are parsed on a worker pool. Each POM is
+     * only resolved and parsed once, the parents shared by many dependencies come from the {@link #poms} cache.
      *
-     * Implementation note: We rely that while resolving configuration with one dependency we get one pom.
-     * Otherwise we have IllegalStateException
-     *
-     * @param project                       the project
-     * @param dependencyDesc dependency description
-     * @param aliases alias mapping for similar license names
-     * @param initialDependency base dependency (not parent)
-     * @return dependency metadata, includes license info
+     * @param projectPath the project whose repositories are used
+     * @param dependencies the dependency descriptions, in group:name:version form
      */
-    private DependencyMetadata retrieveLicensesForDependency(Project project,
-                                                             String dependencyDesc,
-                                                             String initialDependency = dependencyDesc) {
-        Dependency d = project.dependencies.create("$dependencyDesc@pom")
-        Configuration pomConfiguration = project.configurations.detachedConfiguration(d)
-
-        File pStream
+    void resolvePoms(String projectPath, Collection<String> dependencies) {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.runtime.availableProcessors())
         try {
-            pStream = pomConfiguration.resolve().asList().first()
-        } catch (ResolveException) {
-            logger.warn("Unable to retrieve license for $dependencyDesc")
-            return noLicenseMetaData(dependencyDesc)
+            Set<String> toResolve = dependencies.findAll { !poms.containsKey(it) } as LinkedHashSet
+            while (!toResolve.isEmpty()) {
+                Map<String, Future<PomLicenses>> parsed = [:]
+                pomBatches(toResolve).each { Collection<String> batch ->
+                    long start = System.nanoTime()
+                    Map<String, File> pomFiles = pomResolver.resolve(projectPath, batch)
+                    // A batch is resolved at once, so every POM in it gets an equal share of the time
+                    long resolveShare = (timings.time("resolvePoms", start) - start).intdiv(batch.size())
+                    timings.count("poms", batch.size())
+                    batch.each { String dependencyDesc ->
+                        File pomFile = pomFiles[dependencyDesc]
+                        if (pomFile == null) {
+                            poms[dependencyDesc] = PomLicenses.UNRESOLVED
+                            timings.item(dependencyDesc, resolveShare)
+                        } else {
+                            long queued = System.nanoTime()
+                            parsed[dependencyDesc] = executor.submit({
+                                long parseStart = timings.time("parseQueue", queued)
+                                try {
+                                    parsePom(dependencyDesc, pomFile)
+                                } finally {
+                                    timings.item(dependencyDesc, resolveShare + timings.time("parsePoms", parseStart) - parseStart)
+                                }
+                            } as Callable<PomLicenses>)
+                        }
+                    }
+                }
+
+                toResolve = new LinkedHashSet<String>()
+                parsed.each { String dependencyDesc, Future<PomLicenses> future ->
+                    PomLicenses pom
+                    try {
+                        pom = future.get()
+                    } catch (ExecutionException e) {
+                        throw e.cause
+                    }
+                    poms[dependencyDesc] = pom
+                    if (pom.licenses.isEmpty() && pom.parent && !poms.containsKey(pom.parent)) {
+                        toResolve.add(pom.parent)
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow()
         }
+    }
 
-        XmlSlurper slurper = new XmlSlurper(true, false)
-        slurper.setErrorHandler(new org.xml.sax.helpers.DefaultHandler())
+    private static List<Collection<String>> pomBatches(Collection<String> dependencies) {
+        List<Map<String, String>> batches = []
+        dependencies.each { String dependencyDesc ->
+            String module = dependencyDesc.substring(0, dependencyDesc.lastIndexOf(':'))
+            Map<String, String> batch = batches.find { !it.containsKey(module) }
+            if (batch == null) {
+                batch = [:]
+                batches.add(batch)
+            }
+            batch[module] = dependencyDesc
+        }
+        batches.collect { it.values() }
+    }
 
-        GPathResult xml
+    /**
+     * Read the licenses and the parent from a POM, the license names are mapped through the aliases.
+     */
+    private PomLicenses parsePom(String dependencyDesc, File pStream) {
+        PomLicenses pom
         try {
-            xml = slurper.parse(pStream)
-        } catch (org.xml.sax.SAXParseException e) {
-            // Fatal errors are still throw by DefaultHandler, so handle them here.
-            logger.warn("Unable to parse POM file for $dependencyDesc")
+            pom = PomLicenses.read(pStream)
+        } catch (XMLStreamException e) {
             if (ignoreFatalParseErrors) {
-                return noLicenseMetaData(dependencyDesc)
+                return PomLicenses.UNPARSEABLE
             } else {
+                logger.warn("Unable to parse POM file for $dependencyDesc")
                 throw e
             }
         }
 
-        DependencyMetadata pomData = new DependencyMetadata(dependency: initialDependency)
-
-        xml.licenses.license.each {
-            def license = new LicenseMetadata(licenseName: it.name.text().trim(), licenseTextUrl: it.url.text().trim())
-            def alias = aliases.find {
-                aliasEntry ->
-                    aliasEntry.value.any {
-                        aliasElem ->
-                            if (aliasElem instanceof String) {
-                               return aliasElem == license.licenseName
-                            } else if(aliasElem instanceof LicenseMetadata) {
-                                return aliasElem == license
-                            }
+        new PomLicenses(pom.licenses.collect { index.resolveAlias(it) }, pom.parent)
+    }
 
-                    }
+    /**
+     * Retrieve the licenses of a dependency from its POM, or from the POM of the closest parent that declares licenses.
+     * The POMs have to be resolved by {@link #resolvePoms} first.
+     *
+     * @param dependencyDesc dependency description
+     * @return dependency metadata, includes license info
+     */
+    private DependencyMetadata retrieveLicensesForDependency(String dependencyDesc) {
+        DependencyMetadata cached = cacheFor(dependencyDesc)?.get(dependencyDesc)
+        if (cached != null) {
+            return cached
+        }
+        Set<String> visited = new HashSet<String>()
+        String pomDesc = dependencyDesc
+        while (visited.add(pomDesc)) {
+            PomLicenses pom = poms[pomDesc]
+            if (pom == null || pom.is(PomLicenses.UNRESOLVED)) {
+                logger.warn("Unable to retrieve license for $pomDesc")
+                // Not stored, the POM may be available in the next build
+                return noLicenseMetaData(pomDesc)
+            }
+            if (pom.is(PomLicenses.UNPARSEABLE)) {
+                logger.warn("Unable to parse POM file for $pomDesc")
+                return remember(dependencyDesc, noLicenseMetaData(pomDesc))
+            }
+            if (!pom.licenses.isEmpty()) {
+                return remember(dependencyDesc, new DependencyMetadata(dependency: dependencyDesc, licenseMetadataList: new ArrayList<LicenseMetadata>(pom.licenses)))
             }
-            if (alias) {
-                license = alias.key
+            if (!pom.parent) {
+                break
             }
-            pomData.addLicense(license)
+            pomDesc = pom.parent
         }
+        remember(dependencyDesc, noLicenseMetaData(dependencyDesc))
+    }
 
-        if (pomData.hasLicense()) {
-            pomData
-        } else if (xml.parent.text()) {
-            String parentGroup = xml.parent.groupId.text().trim()
-            String parentName = xml.parent.artifactId.text().trim()
-            String parentVersion = xml.parent.version.text().trim()
-
-            retrieveLicensesForDependency(project, "$parentGroup:$parentName:$parentVersion", initialDependency)
-        } else {
-            noLicenseMetaData(initialDependency)
-        }
+    private DependencyMetadata remember(String dependencyDesc, DependencyMetadata metadata) {
+        cacheFor(dependencyDesc)?.put(dependencyDesc, metadata)
+        metadata
     }
 
-    void setDependenciesToIgnore(List<String> dependenciesToIgnore){
-        if(dependenciesToIgnore == null){
-            this.patternsToIgnore = Collections.emptyList();
-            return;
-        }
+    /**
+     * The cache of the licenses of the dependency, none for a snapshot or changing dependency, as a later build may
+     * find another POM for it.
+     */
+    private DependencyLicenseCache cacheFor(String dependencyDesc) {
+        dependencies.changing.contains(dependencyDesc) ? null : licenseCache
+    }
 
-        this.patternsToIgnore = new ArrayList<>(dependenciesToIgnore.size());
-        for(String toIgnore: dependenciesToIgnore){
-            this.patternsToIgnore.add(Pattern.compile(toIgnore))
-        }
+    void setTimings(Timings timings) {
+        this.timings = timings
+        timings.count("dependencies", 0)
+        timings.count("poms", 0)
     }
 }
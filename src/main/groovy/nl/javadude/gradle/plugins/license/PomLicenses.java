@@ -0,0 +1,166 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The licenses declared in a POM, and its parent.
+ */
+class PomLicenses {
+    static final PomLicenses UNRESOLVED = new PomLicenses(Collections.<LicenseMetadata>emptyList(), null);
+    static final PomLicenses UNPARSEABLE = new PomLicenses(Collections.<LicenseMetadata>emptyList(), null);
+
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    final List<LicenseMetadata> licenses;
+    final String parent;
+
+    PomLicenses(List<LicenseMetadata> licenses, String parent) {
+        this.licenses = licenses;
+        this.parent = parent;
+    }
+
+    /**
+     * Stream through the POM until the licenses, or the parent that has to be asked for them, are known. The rest of
+     * the document, like a long dependencyManagement section, is skipped without building a tree.
+     *
+     * @throws XMLStreamException when the POM is not well-formed
+     */
+    static PomLicenses read(File pom) throws IOException, XMLStreamException {
+        InputStream in = new BufferedInputStream(new FileInputStream(pom));
+        XMLStreamReader reader = null;
+        try {
+            // Only the readers are thread safe, not necessarily the factory creating them
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(in);
+            }
+            return read(reader);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            in.close();
+        }
+    }
+
+    private static PomLicenses read(XMLStreamReader reader) throws XMLStreamException {
+        List<LicenseMetadata> licenses = new ArrayList<LicenseMetadata>();
+        String[] parent = null;
+        boolean licensesRead = false;
+
+        // The path below the root element, only project/licenses/license and project/parent are of interest
+        String[] path = new String[3];
+        int depth = -1;
+        String name = null;
+        String url = null;
+        StringBuilder text = new StringBuilder();
+        boolean parentHasText = false;
+        String[] coordinates = new String[3];
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth >= 1 && depth <= path.length) {
+                    path[depth - 1] = reader.getLocalName();
+                }
+                text.setLength(0);
+                if (depth == 2 && is(path, "licenses", "license")) {
+                    name = "";
+                    url = "";
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (depth >= 2) {
+                    text.append(reader.getText());
+                }
+                if (depth >= 1 && "parent".equals(path[0]) && !reader.isWhiteSpace()) {
+                    parentHasText = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 3 && is(path, "licenses", "license", "name")) {
+                    name = text.toString().trim();
+                } else if (depth == 3 && is(path, "licenses", "license", "url")) {
+                    url = text.toString().trim();
+                } else if (depth == 2 && is(path, "licenses", "license")) {
+                    LicenseMetadata license = new LicenseMetadata();
+                    license.setLicenseName(name);
+                    license.setLicenseTextUrl(url);
+                    licenses.add(license);
+                } else if (depth == 2 && "parent".equals(path[0])) {
+                    int index = "groupId".equals(path[1]) ? 0 : "artifactId".equals(path[1]) ? 1 : "version".equals(path[1]) ? 2 : -1;
+                    if (index >= 0) {
+                        coordinates[index] = text.toString().trim();
+                    }
+                } else if (depth == 1 && "licenses".equals(path[0])) {
+                    licensesRead = true;
+                    if (!licenses.isEmpty()) {
+                        // The parent is only needed when there are no licenses
+                        break;
+                    }
+                } else if (depth == 1 && "parent".equals(path[0]) && parentHasText) {
+                    parent = coordinates.clone();
+                    if (licensesRead) {
+                        break;
+                    }
+                }
+                if (depth >= 1 && depth <= path.length) {
+                    path[depth - 1] = null;
+                }
+                text.setLength(0);
+                depth--;
+            }
+        }
+
+        String parentDesc = null;
+        if (parent != null) {
+            parentDesc = valueOf(parent[0]) + ":" + valueOf(parent[1]) + ":" + valueOf(parent[2]);
+        }
+        return new PomLicenses(licenses, parentDesc);
+    }
+
+    private static boolean is(String[] path, String... elements) {
+        for (int i = 0; i < elements.length; i++) {
+            if (!elements[i].equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String valueOf(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+/**
+ * Looks up the POM files of dependencies.
+ */
+interface PomResolver {
+    /**
+     * Resolve the POMs of dependencies that are all different modules, a missing POM does not fail the others.
+     *
+     * @param projectPath the project the dependencies were found in
+     * @param dependencies the dependency descriptions, in group:name:version form
+     * @return the POM files that were found, by dependency description
+     */
+    Map<String, File> resolve(String projectPath, Collection<String> dependencies)
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+import org.gradle.api.Project
+import org.gradle.api.artifacts.ArtifactCollection
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.ExternalModuleDependency
+import org.gradle.api.artifacts.FileCollectionDependency
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier
+import org.gradle.api.artifacts.result.ResolvedArtifactResult
+
+/**
+ * The dependency configuration of a project, as a lazy input of {@link DownloadLicenses}: the artifacts it resolves
+ * to, and what the build script declares about them. The artifacts are resolved when they are first iterated, which is
+ * when the task runs, or when the configuration cache entry is stored.
+ */
+class ProjectDependencies {
+
+    /**
+     * The path of the project.
+     */
+    String path
+
+    String group
+    String name
+    String version
+
+    /**
+     * Whether the dependencies of the project are reported, rather than only found through the projects depending on it.
+     */
+    boolean reported
+
+    /**
+     * The artifacts of the dependency configuration, null when the project has no resolvable one.
+     */
+    ArtifactCollection artifacts
+
+    /**
+     * The modules declared as changing, in group:name form.
+     */
+    Set<String> changingModules = new HashSet<String>()
+
+    /**
+     * The names of the files of the file dependencies.
+     */
+    Set<String> fileDependencies = new LinkedHashSet<String>()
+
+    /**
+     * The project, in group:name:version form.
+     */
+    String getDesc() {
+        "$group:$name:$version".toString()
+    }
+
+    /**
+     * Collect the dependency configuration of the project, of its subprojects, and of all projects they depend on.
+     */
+    static List<ProjectDependencies> collect(Project project, String dependencyConfiguration) {
+        Map<String, ProjectDependencies> collected = new LinkedHashMap<String, ProjectDependencies>()
+        Deque<Project> pending = new ArrayDeque<Project>()
+        pending.add(project)
+        pending.addAll(project.subprojects)
+        Set<Project> reported = new HashSet<Project>(pending)
+        while (!pending.isEmpty()) {
+            Project p = pending.removeFirst()
+            if (collected.containsKey(p.path)) {
+                continue
+            }
+            ProjectDependencies dependencies = of(p, dependencyConfiguration, reported.contains(p))
+            collected[p.path] = dependencies
+            dependencies.artifacts?.artifacts?.each { ResolvedArtifactResult artifact ->
+                def id = artifact.id.componentIdentifier
+                if (id instanceof ProjectComponentIdentifier) {
+                    Project dependency = p.findProject(id.projectPath)
+                    if (dependency != null) {
+                        pending.add(dependency)
+                    }
+                }
+            }
+        }
+        new ArrayList<ProjectDependencies>(collected.values())
+    }
+
+    private static ProjectDependencies of(Project project, String dependencyConfiguration, boolean reported) {
+        ProjectDependencies dependencies = new ProjectDependencies(path: project.path, group: "$project.group",
+                name: project.name, version: "$project.version", reported: reported)
+        Configuration c = project.configurations.findByName(dependencyConfiguration)
+        if (c == null) {
+            return dependencies
+        }
+        if (isResolvable(c)) {
+            project.logger.debug("Resolvable $c in project $project")
+            dependencies.artifacts = c.incoming.artifacts
+            c.allDependencies.withType(ExternalModuleDependency).findAll { it.changing }.each {
+                dependencies.changingModules.add("$it.group:$it.name".toString())
+            }
+        }
+        c.allDependencies.withType(FileCollectionDependency).each { FileCollectionDependency fileDependency ->
+            fileDependency.files.each { dependencies.fileDependencies.add(it.name) }
+        }
+        dependencies
+    }
+
+    /**
+     * Since Gradle 3.4, configurations can be marked as not resolvable by default.
+     * Configuration#isCanBeResolved() from Gradle 3.3 can be used to check that.
+     * @param conf Configuration
+     * @return whether conf is resolvable
+     *
+     * @see <a href="https://docs.gradle.org/3.4/release-notes.html#configurations-can-be-unresolvable">Gradle 3.4 release notes</a>
+     */
+    private static boolean isResolvable(Configuration conf) {
+        return conf.metaClass.respondsTo(conf, "isCanBeResolved") ? conf.isCanBeResolved() : true
+    }
+}
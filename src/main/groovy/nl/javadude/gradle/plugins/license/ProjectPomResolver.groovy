@@ -0,0 +1,70 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.gradle.api.Project
+import org.gradle.api.artifacts.ArtifactCollection
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.Dependency
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.artifacts.result.ResolvedArtifactResult
+
+/**
+ * Resolves POMs from the repositories of the projects in the build, with detached configurations.
+ *
+ * The artifacts of every batch are kept, so a {@link ResolvedPoms} can look the POMs up again without the projects.
+ */
+class ProjectPomResolver implements PomResolver {
+    private final Project project
+    private final Map<String, List<ArtifactCollection>> poms = new LinkedHashMap<String, List<ArtifactCollection>>()
+
+    /**
+     * @param project a project of the build, used to look up the projects by path
+     */
+    ProjectPomResolver(Project project) {
+        this.project = project
+    }
+
+    @Override
+    Map<String, File> resolve(String projectPath, Collection<String> batch) {
+        Project owner = project.project(projectPath)
+        Dependency[] dependencies = batch.collect { owner.dependencies.create("$it@pom") } as Dependency[]
+        Configuration pomConfiguration = owner.configurations.detachedConfiguration(dependencies)
+
+        // Lenient, so a missing POM does not fail the others in the batch
+        ArtifactCollection artifacts = pomConfiguration.incoming.artifactView { lenient = true }.artifacts
+        poms.get(projectPath, []).add(artifacts)
+        pomFiles(artifacts)
+    }
+
+    /**
+     * @return the artifacts of the batches resolved so far, by the path of the project they were resolved from
+     */
+    Map<String, List<ArtifactCollection>> getPoms() {
+        poms
+    }
+
+    static Map<String, File> pomFiles(ArtifactCollection artifacts) {
+        Map<String, File> pomFiles = [:]
+        artifacts.each { ResolvedArtifactResult artifact ->
+            def id = artifact.id.componentIdentifier
+            if (id instanceof ModuleComponentIdentifier) {
+                pomFiles["$id.group:$id.module:$id.version".toString()] = artifact.file
+            }
+        }
+        pomFiles
+    }
+}
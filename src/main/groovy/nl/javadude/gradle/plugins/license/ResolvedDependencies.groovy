@@ -0,0 +1,208 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import groovy.transform.Canonical
+import org.gradle.api.Project
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier
+import org.gradle.api.artifacts.result.ResolvedArtifactResult
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+
+import java.util.regex.Pattern
+
+/**
+ * The dependencies of a project and its subprojects, resolved from their dependency configuration.
+ *
+ * This is all the {@link LicenseResolver} needs from the projects. It is taken from the artifacts of
+ * {@link ProjectDependencies}, so it can be taken in the task action without the live projects.
+ */
+class ResolvedDependencies {
+    private static final Logger logger = Logging.getLogger(ResolvedDependencies)
+
+    /**
+     * An artifact of a module dependency.
+     */
+    @Canonical
+    static class Artifact {
+        String group
+        String name
+        String version
+        String fileName
+
+        String getDependencyDesc() {
+            "$group:$name:$version".toString()
+        }
+    }
+
+    /**
+     * The artifacts by the path of the first project they were found in, whose repositories also provide their POMs.
+     * Every artifact is listed once, even when several projects depend on it.
+     */
+    Map<String, Set<Artifact>> artifacts = new LinkedHashMap<String, Set<Artifact>>()
+
+    /**
+     * The names of the files of file dependencies.
+     */
+    Set<String> fileDependencies = new LinkedHashSet<String>()
+
+    /**
+     * The projects of the build the dependencies were collected from, in group:name:version form.
+     */
+    Set<String> subprojects = new HashSet<String>()
+
+    /**
+     * The dependencies, in group:name:version form, whose POM may change without their version changing: snapshots
+     * and dependencies declared as changing.
+     */
+    Set<String> changing = new HashSet<String>()
+
+    /**
+     * Resolve the dependency configuration of the project and its subprojects.
+     *
+     * @param dependenciesToIgnore patterns of the dependencies to leave out
+     */
+    static ResolvedDependencies resolve(Project project, String dependencyConfiguration, boolean includeProjectDependencies,
+                                        List<String> dependenciesToIgnore) {
+        resolve(ProjectDependencies.collect(project, dependencyConfiguration), includeProjectDependencies, dependenciesToIgnore)
+    }
+
+    /**
+     * Resolve the collected dependency configurations of the reported projects.
+     *
+     * @param dependenciesToIgnore patterns of the dependencies to leave out
+     */
+    static ResolvedDependencies resolve(List<ProjectDependencies> projects, boolean includeProjectDependencies,
+                                        List<String> dependenciesToIgnore) {
+        new Collector(projects, includeProjectDependencies, dependenciesToIgnore).collect()
+    }
+
+    /**
+     * The dependencies of a project that were found by resolving its configuration: the external artifacts, and the
+     * paths of the projects it depends on with the artifact they were found as.
+     */
+    private static class ProjectNode {
+        final Set<Artifact> external = new LinkedHashSet<Artifact>()
+        final Map<String, Artifact> subprojects = new LinkedHashMap<String, Artifact>()
+        final Set<String> changing = new HashSet<String>()
+    }
+
+    private static class Collector {
+        final Map<String, ProjectDependencies> projects = new LinkedHashMap<String, ProjectDependencies>()
+        final boolean includeProjectDependencies
+        final List<Pattern> patternsToIgnore
+
+        // Every project is resolved once, however many projects depend on it
+        final Map<String, ProjectNode> nodes = new HashMap<String, ProjectNode>()
+
+        Collector(List<ProjectDependencies> projects, boolean includeProjectDependencies, List<String> dependenciesToIgnore) {
+            projects.each { this.projects[it.path] = it }
+            this.includeProjectDependencies = includeProjectDependencies
+            this.patternsToIgnore = (dependenciesToIgnore ?: []).collect { Pattern.compile(it) }
+        }
+
+        ResolvedDependencies collect() {
+            ResolvedDependencies resolved = new ResolvedDependencies()
+            projects.values().each { resolved.subprojects.add(it.desc) }
+            logger.info("Found subprojects: ${projects.keySet()}")
+
+            Set<Artifact> seen = new HashSet<Artifact>()
+            projects.values().findAll { it.reported }.each { ProjectDependencies p ->
+                Set<Artifact> artifacts = new LinkedHashSet<Artifact>()
+                resolveProjectDependencies(p.path).each { Artifact artifact ->
+                    if (seen.add(artifact)) {
+                        artifacts.add(artifact)
+                    }
+                }
+                resolved.artifacts[p.path] = artifacts
+                resolved.fileDependencies.addAll(p.fileDependencies.findAll { isDependencyIncluded(it) })
+            }
+            nodes.values().each { ProjectNode node -> resolved.changing.addAll(node.changing) }
+            resolved
+        }
+
+        /**
+         * Provide full list of artifacts to handle for a given project, which are its own artifacts and the ones of
+         * the projects it depends on.
+         *
+         * @param projectPath the path of the project
+         * @return Set with artifacts
+         */
+        Set<Artifact> resolveProjectDependencies(String projectPath) {
+            Set<Artifact> dependenciesToHandle = new LinkedHashSet<Artifact>()
+            Set<String> subprojectsAlreadyScanned = new HashSet<String>()
+            Deque<String> pending = new ArrayDeque<String>()
+            pending.push(projectPath)
+            while (!pending.isEmpty()) {
+                ProjectNode node = node(pending.pop())
+                dependenciesToHandle.addAll(node.external)
+                node.subprojects.each { String subproject, Artifact d ->
+                    if (subprojectsAlreadyScanned.add(subproject)) {
+                        if (includeProjectDependencies) {
+                            dependenciesToHandle.add(d)
+                        }
+                        pending.push(subproject)
+                    }
+                }
+            }
+
+            logger.debug("Project $projectPath found ${dependenciesToHandle.size()} dependencies to handle.")
+            dependenciesToHandle
+        }
+
+        /**
+         * Resolve the dependency configuration of the project, the first time it is asked for.
+         */
+        ProjectNode node(String projectPath) {
+            ProjectNode node = nodes.get(projectPath)
+            if (node != null) {
+                return node
+            }
+            node = new ProjectNode()
+            nodes.put(projectPath, node)
+
+            ProjectDependencies project = projects[projectPath]
+            project?.artifacts?.artifacts?.each { ResolvedArtifactResult d ->
+                def id = d.id.componentIdentifier
+                if (id instanceof ModuleComponentIdentifier) {
+                    Artifact artifact = new Artifact(id.group, id.module, id.version, d.file.name)
+                    if (isDependencyIncluded(artifact.dependencyDesc)) {
+                        node.external.add(artifact)
+                        if (id.version.endsWith("-SNAPSHOT") || project.changingModules.contains("$id.group:$id.module".toString())) {
+                            node.changing.add(artifact.dependencyDesc)
+                        }
+                    }
+                } else if (id instanceof ProjectComponentIdentifier) {
+                    ProjectDependencies subproject = projects[id.projectPath]
+                    if (subproject != null && isDependencyIncluded(subproject.desc) && !node.subprojects.containsKey(subproject.path)) {
+                        node.subprojects.put(subproject.path, new Artifact(subproject.group, subproject.name, subproject.version, d.file.name))
+                    }
+                }
+            }
+            node
+        }
+
+        boolean isDependencyIncluded(String depName){
+            for(Pattern pattern: this.patternsToIgnore){
+                if(pattern.matcher(depName).matches()){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.gradle.api.artifacts.ArtifactCollection
+
+/**
+ * Looks up POMs in the artifacts resolved by a {@link ProjectPomResolver} for the same dependencies. These artifacts
+ * are an input of {@link DownloadLicenses}, which reads the POMs in its task action. A POM that was not resolved
+ * then is missing.
+ */
+class ResolvedPoms implements PomResolver {
+    private final Map<String, List<ArtifactCollection>> poms
+    private final Map<String, Map<String, File>> pomFiles = [:]
+
+    /**
+     * @param poms the artifacts of the resolved POMs, by the path of the project they were resolved from
+     */
+    ResolvedPoms(Map<String, List<ArtifactCollection>> poms) {
+        this.poms = poms
+    }
+
+    @Override
+    Map<String, File> resolve(String projectPath, Collection<String> dependencies) {
+        Map<String, File> files = pomFiles[projectPath]
+        if (files == null) {
+            files = [:]
+            poms[projectPath]?.each { files.putAll(ProjectPomResolver.pomFiles(it)) }
+            pomFiles[projectPath] = files
+        }
+        files.subMap(dependencies.findAll { files.containsKey(it) })
+    }
+}
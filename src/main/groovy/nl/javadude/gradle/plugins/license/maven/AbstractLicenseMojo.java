@@ -15,6 +15,7 @@
  */
 package nl.javadude.gradle.plugins.license.maven;
 
+import com.hierynomus.gradle.license.Timings;
 import com.mycila.maven.plugin.license.Callback;
 import com.mycila.maven.plugin.license.HeaderSection;
 import com.mycila.maven.plugin.license.document.Document;
@@ -24,9 +25,10 @@ import com.mycila.maven.plugin.license.header.Header;
 import com.mycila.maven.plugin.license.header.HeaderSource.UrlHeaderSource;
 import com.mycila.maven.plugin.license.header.HeaderDefinition;
 import com.mycila.maven.plugin.license.header.HeaderType;
-import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.EmptyFileVisitor;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
@@ -34,26 +36,43 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.mycila.maven.plugin.license.document.DocumentType.defaultMapping;
 
 public class AbstractLicenseMojo {
     static Logger logger = Logging.getLogger(AbstractLicenseMojo.class);
 
+    public static final int DEFAULT_SCAN_BYTES = 16 * 1024;
+
+    // Files handed to a worker at once
+    private static final int BATCH_SIZE = 64;
+
+    // Batches handed to shared workers that have not run yet, like the queue of the private pool
+    private static final int MAX_PENDING_BATCHES = Runtime.getRuntime().availableProcessors() * 2;
+
+    // ${property} and {{property}} references in a header
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)\\}|\\{\\{\\s*([^}\\s]+)\\s*\\}\\}");
+
     // Backing AbstraceLicenseMojo
     Collection<File> validHeaders; // Convert to FileCollection
     File rootDir;
@@ -71,11 +90,22 @@ public class AbstractLicenseMojo {
     boolean useDefaultMappings;
     boolean strictCheck;
     URI header;
-    FileCollection source;
+    Iterable<File> source;
+    HeaderCheckCache headerCheckCache;
+    Collection<File> changedFiles;
+    Collection<File> removedFiles;
+    BatchWorkers workers;
+    int scanBytes = DEFAULT_SCAN_BYTES;
+    Timings timings;
+    boolean failFast;
+    private Charset charset;
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private final AtomicInteger unsupportedFiles = new AtomicInteger();
+    private final AtomicInteger binaryFiles = new AtomicInteger();
 
     public AbstractLicenseMojo(Collection<File> validHeaders, File rootDir, Map<String, String> initial,
                     boolean dryRun, boolean skipExistingHeaders, boolean useDefaultMappings, boolean strictCheck,
-                    URI header, FileCollection source, Map<String, String> mapping, String encoding, List<HeaderDefinition> headerDefinitions) {
+                    URI header, Iterable<File> source, Map<String, String> mapping, String encoding, List<HeaderDefinition> headerDefinitions) {
         this.validHeaders = validHeaders;
         this.rootDir = rootDir;
         this.initial = initial;
@@ -90,8 +120,74 @@ public class AbstractLicenseMojo {
         this.headerDefinitions = headerDefinitions;
     }
 
+    /**
+     * Remember the verdicts of a check run, so unchanged files are not checked again on the next run.
+     */
+    public void setHeaderCheckCache(HeaderCheckCache headerCheckCache) {
+        this.headerCheckCache = headerCheckCache;
+    }
+
+    /**
+     * Only check the given files instead of all of the source, if the verdicts for the others are still known.
+     */
+    public void setIncrementalChanges(Collection<File> changedFiles, Collection<File> removedFiles) {
+        this.changedFiles = changedFiles;
+        this.removedFiles = removedFiles;
+    }
+
+    /**
+     * Run the batches on the given workers, instead of a private pool sized by the {@link #concurrencyFactor}.
+     */
+    public void setWorkers(BatchWorkers workers) {
+        this.workers = workers;
+    }
+
+    public void setConcurrencyFactor(float concurrencyFactor) {
+        this.concurrencyFactor = concurrencyFactor;
+    }
+
+    /**
+     * The number of threads used for a concurrency factor, relative to the number of available processors.
+     */
+    private static int threadsFor(float concurrencyFactor) {
+        return Math.max(1, (int) (Runtime.getRuntime().availableProcessors() * concurrencyFactor));
+    }
+
+    /**
+     * Record the files and bytes read, the time spent per phase and the slowest files.
+     */
+    public void setTimings(Timings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Number of bytes read from the start of a file to look for the header.
+     */
+    public void setScanBytes(int scanBytes) {
+        this.scanBytes = scanBytes;
+    }
+
+    /**
+     * Stop a check at the first file missing a header, the files that are not yet checked are skipped.
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
     protected void execute(final Callback callback) throws MalformedURLException, IOException {
         final Map<String, String> props = mergeProperties();
+        charset = Charset.forName(encoding);
+        unsupportedFiles.set(0);
+        binaryFiles.set(0);
+        stopped.set(false);
+        if (timings == null) {
+            timings = new Timings("license", 0);
+        }
+        timings.count("files", 0);
+        timings.count("bytes", 0);
+        if (callback instanceof LicenseFormatMojo) {
+            ((LicenseFormatMojo) callback).setTimings(timings);
+        }
 
         final Header h = new Header(new UrlHeaderSource(header.toURL(), encoding), headerSections);
         logger.debug("Header {}:\n{}", h.getLocation(), h);
@@ -104,79 +200,450 @@ public class AbstractLicenseMojo {
             validHeaders.add(new Header(new UrlHeaderSource(validHeader.toURI().toURL(), encoding), headerSections));
         }
 
+        final Properties sharedProperties = sharedProperties(props, referencedProperties(h, validHeaders));
         final DocumentPropertiesLoader documentPropertiesLoader = new DocumentPropertiesLoader() {
             @Override
             public Properties load(Document d) {
-                Properties properties = new Properties();
-
-                for (String key : props.keySet()) {
-                    properties.put(key, String.valueOf(props.get(key)));
-                }
-
+                // Only file.name differs between documents, everything else is looked up in the shared defaults
+                Properties properties = new Properties(sharedProperties);
                 properties.put("file.name", d.getFile().getName());
-
                 return properties;
             }
         };
-        Map<String, HeaderDefinition> definitions = buildHeaderDefinitions();
-        final DocumentFactory documentFactory = new DocumentFactory(rootDir, buildMapping(definitions), definitions,
+        final Map<String, HeaderDefinition> definitions = buildHeaderDefinitions();
+        final Map<String, String> extensionMapping = buildMapping(definitions);
+        final DocumentFactory documentFactory = new DocumentFactory(rootDir, extensionMapping, definitions,
                         encoding, keywords, documentPropertiesLoader);
+        final HeaderMatcher matcher = buildMatcher(h, validHeaders, sharedProperties);
+
+        // Verdicts can only be replayed for a check, a format run has to touch the files
+        final HeaderCheckCache cache = callback instanceof LicenseCheckMojo ? headerCheckCache : null;
+        boolean cacheValid = cache != null && cache.load(cacheFingerprint(h, validHeaders, sharedProperties, definitions, extensionMapping));
+
+        // A check can only skip the unchanged files when it still knows which of them are missing a header
+        Iterable<File> files = source;
+        if (changedFiles != null && (!(callback instanceof LicenseCheckMojo) || cacheValid)) {
+            files = changedFiles;
+            if (cache != null) {
+                for (Map.Entry<File, HeaderCheckCache.Verdict> retained : cache.retainUnchanged(changedFiles, removedFiles).entrySet()) {
+                    replay(retained.getKey(), retained.getValue(), (LicenseCheckMojo) callback);
+                }
+            }
+        } else if (changedFiles != null) {
+            logger.info("No usable verdicts of the previous run, checking all files");
+        }
+
+        FileBatchPipeline.FileProcessor processor = new FileBatchPipeline.FileProcessor() {
+            public void process(File file) {
+                if (stopped.get()) {
+                    return;
+                }
+                // Files with an unknown extension are never read, not even to look up their verdict
+                if (!documentFactory.isSupported(file)) {
+                    unsupported(file);
+                    if (cache != null) {
+                        cache.remember(file, HeaderCheckCache.Verdict.UNSUPPORTED);
+                    }
+                    if (callback instanceof LicenseCheckMojo) {
+                        ((LicenseCheckMojo) callback).onVerdict(file, HeaderCheckCache.Verdict.UNSUPPORTED);
+                    }
+                    return;
+                }
+                HeaderCheckCache.Verdict verdict = cache != null ? cache.lookup(file) : null;
+                if (verdict != null) {
+                    replay(file, verdict, (LicenseCheckMojo) callback);
+                    return;
+                }
+                verdict = check(file, documentFactory, h, validHeaders, matcher, callback, cache);
+                if (callback instanceof LicenseCheckMojo) {
+                    ((LicenseCheckMojo) callback).onVerdict(file, verdict);
+                }
+                stopOnFailure(callback);
+            }
+        };
+
+        if (workers != null) {
+            submitBatches(files, processor);
+        } else {
+            int nThreads = threadsFor(concurrencyFactor);
+            logger.debug("Number of execution threads: {}", nThreads);
+            ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+            try {
+                final FileBatchPipeline pipeline = new FileBatchPipeline(executorService, nThreads * 2, BATCH_SIZE, processor, timings);
+                visit(files, new FileBatchPipeline.FileProcessor() {
+                    public void process(File file) {
+                        pipeline.add(file);
+                    }
+                });
+                pipeline.finish();
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+
+        if (stopped.get()) {
+            logger.lifecycle("Stopped at the first file missing a header");
+            // The verdicts of the files that were not checked would be missing on the next run
+            if (cache != null) {
+                cache.discard();
+            }
+        } else if (cache != null) {
+            cache.save();
+        }
 
-        int nThreads = (int) (Runtime.getRuntime().availableProcessors() * concurrencyFactor);
-        ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
-        CompletionService<Boolean> completionService = new ExecutorCompletionService<Boolean>(executorService);
-        int count = 0;
-        logger.debug("Number of execution threads: {}", nThreads);
+        // One line for all skipped files, with res directories these are often most of the files
+        int unsupported = unsupportedFiles.get();
+        int binary = binaryFiles.get();
+        if (unsupported > 0) {
+            timings.count("unsupported", unsupported);
+        }
+        if (binary > 0) {
+            timings.count("binary", binary);
+        }
+        if (unsupported > 0 || binary > 0) {
+            logger.warn("Skipped {} files with an unknown extension and {} binary files, run with --info to list them",
+                            unsupported, binary);
+        }
+    }
 
+    /**
+     * Hand all batches to the workers and wait for them. At most {@link #MAX_PENDING_BATCHES} batches are handed over
+     * before they have run, so their files are not all held in memory at once. When that many are pending the task
+     * runs the next batch itself rather than waiting for a worker, as with a single worker the task holds the only one.
+     */
+    private void submitBatches(Iterable<File> files, FileBatchPipeline.FileProcessor processor) {
+        BatchSubmitter submitter = new BatchSubmitter(processor);
         try {
-            for (final File file : source) {
-                completionService.submit(new Runnable() {
-                    public void run() {
-                        Document document = documentFactory.createDocuments(file);
-                        logger.debug("Selected file: {} [header style: {}]", DocumentFactory.getRelativeFile(rootDir, document),
-                                        document.getHeaderDefinition());
-                        if (document.isNotSupported()) {
-                            logger.warn("Unknown file extension: {}", DocumentFactory.getRelativeFile(rootDir, document));
-                        } else if (document.is(h)) {
-                            logger.debug("Skipping header file: {}", DocumentFactory.getRelativeFile(rootDir, document));
-                        } else if (document.hasHeader(h, strictCheck)) {
-                            callback.onExistingHeader(document, h);
-                        } else {
-                            boolean headerFound = false;
-                            for (Header validHeader : validHeaders) {
-                                headerFound = document.hasHeader(validHeader, strictCheck);
-                                if (headerFound) {
-                                    callback.onExistingHeader(document, h);
-                                    break;
-                                }
-                            }
-                            if (!headerFound)
-                                callback.onHeaderNotFound(document, h);
-                        }
+            visit(files, submitter);
+            submitter.flush();
+        } catch (RuntimeException | Error e) {
+            // The batches handed over before still run, wait for them before failing the task
+            try {
+                workers.await();
+            } catch (RuntimeException | Error other) {
+                e.addSuppressed(other);
+            }
+            throw e;
+        }
+        workers.await();
+    }
+
+    private final class BatchSubmitter implements FileBatchPipeline.FileProcessor {
+        private final FileBatchPipeline.FileProcessor processor;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private final Semaphore pending = new Semaphore(MAX_PENDING_BATCHES);
+        private List<File> batch = new ArrayList<File>(BATCH_SIZE);
+
+        BatchSubmitter(FileBatchPipeline.FileProcessor processor) {
+            this.processor = processor;
+        }
+
+        public void process(File file) {
+            batch.add(file);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<File> files = batch;
+            final long queued = System.nanoTime();
+            batch = new ArrayList<File>(BATCH_SIZE);
+            if (!pending.tryAcquire()) {
+                run(files);
+                return;
+            }
+            workers.submit(new Runnable() {
+                public void run() {
+                    timings.time("queue", queued);
+                    try {
+                        BatchSubmitter.this.run(files);
+                    } finally {
+                        pending.release();
                     }
-                }, null);
-                count++;
-            }
-
-            while (count-- > 0) {
-                try {
-                    completionService.take().get();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                } catch (ExecutionException e) {
-                    Throwable cause = e.getCause();
-                    if (cause instanceof Error)
-                        throw (Error) cause;
-                    if (cause instanceof RuntimeException)
-                        throw (RuntimeException) cause;
-                    throw new GradleException(cause.getMessage(), cause);
                 }
+            });
+        }
+
+        private void run(List<File> files) {
+            try {
+                for (File file : files) {
+                    // The first failure fails the task, the remaining files have nothing to add
+                    if (failed.get()) {
+                        return;
+                    }
+                    processor.process(file);
+                }
+            } catch (RuntimeException | Error e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+    }
+
+    private void visit(Iterable<File> files, final FileBatchPipeline.FileProcessor visitor) {
+        if (files instanceof FileCollection) {
+            // Visiting streams the files while walking the directories, rather than collecting them all up front
+            ((FileCollection) files).getAsFileTree().visit(new EmptyFileVisitor() {
+                @Override
+                public void visitFile(FileVisitDetails fileDetails) {
+                    if (stopped.get()) {
+                        fileDetails.stopVisiting();
+                        return;
+                    }
+                    visitor.process(fileDetails.getFile());
+                }
+            });
+        } else {
+            for (File file : files) {
+                if (stopped.get()) {
+                    break;
+                }
+                visitor.process(file);
             }
+        }
+    }
+
+    private void stopOnFailure(Callback callback) {
+        if (failFast && callback instanceof LicenseCheckMojo && ((LicenseCheckMojo) callback).hadFailure()) {
+            stopped.set(true);
+        }
+    }
 
+    private HeaderCheckCache.Verdict check(File file, DocumentFactory documentFactory, Header h, List<Header> validHeaders,
+                                           HeaderMatcher matcher, Callback callback, HeaderCheckCache cache) {
+        long start = System.nanoTime();
+        try {
+            // The start of the file is the only part that is read, unless the header does not fit in it
+            DocumentPrefix prefix = readPrefix(file);
+            HeaderCheckCache.Verdict verdict = check(file, prefix, documentFactory, h, validHeaders, matcher, callback, start);
+            if (cache != null) {
+                cache.record(file, verdict, prefix.verdictBytes());
+            }
+            return verdict;
         } finally {
-            executorService.shutdownNow();
+            timings.count("files", 1);
+            timings.item(DocumentFactory.getRelativeFile(rootDir, file), System.nanoTime() - start);
         }
+    }
 
+    private HeaderCheckCache.Verdict check(File file, DocumentPrefix prefix, DocumentFactory documentFactory, Header h,
+                                           List<Header> validHeaders, HeaderMatcher matcher, Callback callback, long start) {
+        long creating = timings.time("read", start);
+        if (prefix.binary()) {
+            binary(file);
+            return HeaderCheckCache.Verdict.BINARY;
+        }
+        Document document = documentFactory.createDocuments(file);
+        long matching = timings.time("create", creating);
+        logger.debug("Selected file: {} [header style: {}]", DocumentFactory.getRelativeFile(rootDir, document),
+                        document.getHeaderDefinition());
+        if (document.isNotSupported()) {
+            unsupported(file);
+            return HeaderCheckCache.Verdict.UNSUPPORTED;
+        } else if (document.is(h)) {
+            logger.debug("Skipping header file: {}", DocumentFactory.getRelativeFile(rootDir, document));
+            return HeaderCheckCache.Verdict.SKIPPED;
+        }
+        boolean found = hasHeader(document, prefix, h, validHeaders, matcher);
+        timings.time("match", matching);
+        if (found) {
+            callback.onExistingHeader(document, h);
+            return HeaderCheckCache.Verdict.OK;
+        } else {
+            if (skipExistingHeaders) {
+                // Whether the file has another header is found by parsing the whole document
+                prefix.readPast();
+            }
+            callback.onHeaderNotFound(document, h);
+            if (callback instanceof LicenseCheckMojo && !((LicenseCheckMojo) callback).isMissing(file)) {
+                return HeaderCheckCache.Verdict.OK;
+            }
+            return HeaderCheckCache.Verdict.MISSING;
+        }
+    }
+
+    private DocumentPrefix readPrefix(File file) {
+        try {
+            DocumentPrefix prefix = DocumentPrefix.read(file, scanBytes, charset);
+            timings.count("bytes", prefix.bytes());
+            return prefix;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read file " + file + ". Cause: " + e.getMessage(), e);
+        }
+    }
+
+    private void unsupported(File file) {
+        unsupportedFiles.incrementAndGet();
+        logger.info("Unknown file extension: {}", DocumentFactory.getRelativeFile(rootDir, file));
+    }
+
+    private void binary(File file) {
+        binaryFiles.incrementAndGet();
+        logger.info("Binary file: {}", DocumentFactory.getRelativeFile(rootDir, file));
+    }
+
+    // A strict check compares the header line by line, which the matcher does not do
+    private boolean hasHeader(Document document, DocumentPrefix prefix, Header h, List<Header> validHeaders, HeaderMatcher matcher) {
+        if (!strictCheck) {
+            return matcher.matches(document, prefix);
+        }
+        prefix.readPast();
+        if (document.hasHeader(h, true)) {
+            return true;
+        }
+        for (Header validHeader : validHeaders) {
+            if (document.hasHeader(validHeader, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static HeaderMatcher buildMatcher(Header h, List<Header> validHeaders, Properties sharedProperties) {
+        List<Header> headers = new ArrayList<Header>(validHeaders.size() + 1);
+        headers.add(h);
+        headers.addAll(validHeaders);
+        boolean[] perDocument = new boolean[headers.size()];
+        for (int i = 0; i < headers.size(); i++) {
+            perDocument[i] = referencesFileName(referencedProperties(headers.get(i)), sharedProperties);
+        }
+        return new HeaderMatcher(headers, perDocument);
+    }
+
+    /**
+     * Whether the header resolves file.name, the only property that is not the same for every document, see the
+     * DocumentPropertiesLoader. A nested placeholder might resolve it as well.
+     */
+    static boolean referencesFileName(Set<String> referenced, Properties sharedProperties) {
+        Set<String> seen = new HashSet<String>();
+        LinkedList<String> keys = new LinkedList<String>(referenced);
+        while (!keys.isEmpty()) {
+            String key = keys.removeFirst();
+            if (key.equals("file.name") || key.contains("$") || key.contains("{")) {
+                return true;
+            }
+            String value = sharedProperties.getProperty(key);
+            if (seen.add(key) && value != null) {
+                keys.addAll(referencedProperties(value));
+            }
+        }
+        return false;
+    }
+
+    private void replay(File file, HeaderCheckCache.Verdict verdict, LicenseCheckMojo callback) {
+        timings.count("cached", 1);
+        callback.onVerdict(file, verdict);
+        switch (verdict) {
+            case UNSUPPORTED:
+                unsupported(file);
+                break;
+            case BINARY:
+                binary(file);
+                break;
+            case SKIPPED:
+                logger.debug("Skipping header file: {}", DocumentFactory.getRelativeFile(rootDir, file));
+                break;
+            case MISSING:
+                callback.onCachedHeaderNotFound(file);
+                break;
+            default:
+                callback.onCachedExistingHeader(file);
+        }
+        stopOnFailure(callback);
+    }
+
+    /**
+     * Everything that can change the verdict for a file with the same content: the headers, the properties they
+     * reference, the comment styles and the mappings.
+     */
+    private String cacheFingerprint(Header h, List<Header> validHeaders, Properties sharedProperties,
+                                    Map<String, HeaderDefinition> definitions, Map<String, String> extensionMapping) {
+        List<String> values = new ArrayList<String>();
+        values.add(String.valueOf(strictCheck));
+        values.add(String.valueOf(skipExistingHeaders));
+        values.add(encoding);
+        values.addAll(Arrays.asList(keywords));
+        values.add(h.asString());
+        for (Header validHeader : validHeaders) {
+            values.add(validHeader.asString());
+        }
+        for (String key : new TreeSet<String>(sharedProperties.stringPropertyNames())) {
+            values.add(key + "=" + sharedProperties.getProperty(key));
+        }
+        for (HeaderDefinition definition : new TreeMap<String, HeaderDefinition>(definitions).values()) {
+            values.add(definition.getType());
+            values.add(definition.getFirstLine());
+            values.add(definition.getBeforeEachLine());
+            values.add(definition.getEndLine());
+            values.add(definition.getAfterEachLine());
+            values.add(String.valueOf(definition.allowBlankLines()));
+            values.add(String.valueOf(definition.isMultiLine()));
+            values.add(String.valueOf(definition.isPadLines()));
+        }
+        values.add(new TreeMap<String, String>(extensionMapping).toString());
+        return HeaderCheckCache.fingerprint(values);
+    }
+
+    private static Set<String> referencedProperties(Header h, List<Header> validHeaders) {
+        Set<String> keys = referencedProperties(h);
+        for (Header header : validHeaders) {
+            keys.addAll(referencedProperties(header));
+        }
+        return keys;
+    }
+
+    private static Set<String> referencedProperties(Header header) {
+        return referencedProperties(header.asString());
+    }
+
+    static Set<String> referencedProperties(String text) {
+        Set<String> keys = new HashSet<String>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        while (matcher.find()) {
+            String key = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+            keys.add(key);
+            // ${key:default} is looked up as a whole first, and then by the part before the separator
+            int separator = key.indexOf(':');
+            if (separator >= 0) {
+                keys.add(key.substring(0, separator));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The properties the headers can resolve, which are the referenced ones and the ones referenced by their values.
+     * Copying only those keeps the environment and the system properties out of every document.
+     */
+    static Properties sharedProperties(Map<String, String> props, Set<String> referenced) {
+        Properties properties = new Properties();
+        LinkedList<String> keys = new LinkedList<String>(referenced);
+        while (!keys.isEmpty()) {
+            String key = keys.removeFirst();
+            if (key.contains("$") || key.contains("{")) {
+                // A nested placeholder is resolved from a key that is only known when the header is merged
+                return allProperties(props);
+            }
+            if (properties.containsKey(key) || !props.containsKey(key)) {
+                continue;
+            }
+            String value = String.valueOf(props.get(key));
+            properties.put(key, value);
+            keys.addAll(referencedProperties(value));
+        }
+        return properties;
+    }
+
+    private static Properties allProperties(Map<String, String> props) {
+        Properties properties = new Properties();
+        for (String key : props.keySet()) {
+            properties.put(key, String.valueOf(props.get(key)));
+        }
+        return properties;
     }
 
     // //////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,32 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+/**
+ * Workers that are not owned by the mojo, which runs its batches of files on them instead of on a pool of its own.
+ */
+public interface BatchWorkers {
+    /**
+     * Hand a batch to a worker, it may run after this method returns.
+     */
+    void submit(Runnable batch);
+
+    /**
+     * Wait until all submitted batches have run, rethrowing the failure of any of them. Batches may be submitted
+     * again afterwards.
+     */
+    void await();
+}
@@ -18,8 +18,10 @@ package nl.javadude.gradle.plugins.license.maven;
 import com.mycila.maven.plugin.license.document.Document;
 import com.mycila.maven.plugin.license.document.DocumentPropertiesLoader;
 import com.mycila.maven.plugin.license.header.HeaderDefinition;
+import com.mycila.maven.plugin.license.header.HeaderType;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.codehaus.plexus.util.FileUtils.*;
@@ -29,20 +31,36 @@ import static org.codehaus.plexus.util.FileUtils.*;
  * <b>Author:</b> Mathieu Carbou (mathieu.carbou@gmail.com)
  */
 public final class DocumentFactory {
-    private final Map<String, String> mapping;
-    private final Map<String, HeaderDefinition> definitions;
     private final File basedir;
     private final String encoding;
     private final String[] keywords;
     private final DocumentPropertiesLoader documentPropertiesLoader;
+    // The header definition by extension, so the definition of a file is known without creating a Document
+    private final Map<String, HeaderDefinition> extensionDefinitions = new HashMap<String, HeaderDefinition>();
+    private final HeaderDefinition defaultDefinition;
 
     public DocumentFactory(File basedir, Map<String, String> mapping, Map<String, HeaderDefinition> definitions, String encoding, String[] keywords, DocumentPropertiesLoader documentPropertiesLoader) {
-        this.mapping = mapping;
-        this.definitions = definitions;
         this.basedir = basedir;
         this.encoding = encoding;
         this.keywords = keywords.clone();
         this.documentPropertiesLoader = documentPropertiesLoader;
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            extensionDefinitions.put(entry.getKey(), definitions.get(entry.getValue().toLowerCase()));
+        }
+        this.defaultDefinition = definitions.get(mapping.get(""));
+    }
+
+    /**
+     * Whether files like this one have a header definition, decided by its extension without reading the file.
+     */
+    public boolean isSupported(File file) {
+        HeaderDefinition definition = definitionFor(file);
+        return definition != null && !HeaderType.UNKNOWN.getDefinition().getType().equals(definition.getType());
+    }
+
+    private HeaderDefinition definitionFor(File file) {
+        String extension = extension(file.getName()).toLowerCase();
+        return extensionDefinitions.containsKey(extension) ? extensionDefinitions.get(extension) : defaultDefinition;
     }
 
     public Document createDocuments(String file) {
@@ -58,22 +76,20 @@ public final class DocumentFactory {
     }
 
     private Document getWrapper(File file, String encoding) {
-        String headerType = mapping.get(extension(file.getName()).toLowerCase());
-        if (headerType == null) {
-            headerType = mapping.get("");
-        } else {
-            headerType = headerType.toLowerCase();
-        }
-        return new Document(file, definitions.get(headerType), encoding, keywords, documentPropertiesLoader);
+        return new Document(file, definitionFor(file), encoding, keywords, documentPropertiesLoader);
     }
 
     public static String getRelativeFile(File basedir, Document document) {
+        return getRelativeFile(basedir, document.getFile());
+    }
+
+    public static String getRelativeFile(File basedir, File file) {
         String prefix = basedir.getAbsolutePath();
-        String whole = document.getFile().getAbsolutePath();
+        String whole = file.getAbsolutePath();
         if (whole.startsWith(prefix)) {
             return whole.substring(prefix.length()+1);
         } else {
-            return document.getFile().getPath();
+            return file.getPath();
         }
     }
 }
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.document.Document;
+import com.mycila.maven.plugin.license.header.Header;
+import com.mycila.maven.plugin.license.header.HeaderDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The first bytes of a file, which is where a header is looked for.
+ *
+ * The prefix is read once per file and shared by the checks for the header and all valid headers, instead of
+ * opening the file again for every one of them. It is also the only read of a file the {@link HeaderCheckCache} needs,
+ * which takes the digest of the bytes the verdict of a file depends on from the prefix.
+ */
+final class DocumentPrefix {
+    // The first bytes of image, archive, document and executable formats
+    private static final byte[][] MAGIC = {
+                    { (byte) 0x89, 'P', 'N', 'G' },
+                    { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF },
+                    { 'G', 'I', 'F', '8' },
+                    { 'R', 'I', 'F', 'F' },
+                    { 'P', 'K', 0x03, 0x04 },
+                    { 0x1F, (byte) 0x8B },
+                    { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE },
+                    { 0x7F, 'E', 'L', 'F' },
+                    { '%', 'P', 'D', 'F', '-' }
+    };
+
+    private final String text;
+    private final boolean complete;
+    private final int bytes;
+    private final boolean binary;
+    private final byte[] content;
+    private final byte[] head;
+    private boolean readPast;
+
+    private DocumentPrefix(String text, boolean complete, int bytes, boolean binary, byte[] content, byte[] head) {
+        this.text = text;
+        this.complete = complete;
+        this.bytes = bytes;
+        this.binary = binary;
+        this.content = content;
+        this.head = head;
+    }
+
+    /**
+     * Read at most scanBytes bytes of the file.
+     */
+    static DocumentPrefix read(File file, int scanBytes, Charset charset) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(size, scanBytes));
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+                // keep reading until the prefix is filled
+            }
+            bytes.flip();
+            boolean complete = bytes.limit() >= size;
+            boolean binary = isBinary(bytes, charset);
+            byte[] head = Arrays.copyOf(bytes.array(), bytes.limit());
+            byte[] content = complete ? head : null;
+
+            // Replace malformed input like the Reader used by Document does, a character cut off at the end of the
+            // prefix is left undecoded.
+            CharsetDecoder decoder = charset.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer chars = CharBuffer.allocate((int) (bytes.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+            decoder.decode(bytes, chars, complete);
+            if (complete) {
+                decoder.flush(chars);
+            }
+            chars.flip();
+            return new DocumentPrefix(chars.toString(), complete, bytes.limit(), binary, content, head);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Whether the file starts with the magic bytes of a binary format, or has a NUL byte in its prefix. A NUL byte is
+     * only taken as a sign of a binary file when the encoding does not use it for text, like UTF-16 does.
+     */
+    static boolean isBinary(ByteBuffer bytes, Charset charset) {
+        for (byte[] magic : MAGIC) {
+            if (startsWith(bytes, magic)) {
+                return true;
+            }
+        }
+        if ("\n".getBytes(charset).length == 1) {
+            for (int i = bytes.position(); i < bytes.limit(); i++) {
+                if (bytes.get(i) == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, byte[] magic) {
+        if (bytes.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (bytes.get(bytes.position() + i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the file is binary, and so never has a header.
+     */
+    boolean binary() {
+        return binary;
+    }
+
+    /**
+     * The whole file, or null when it is longer than the prefix.
+     */
+    byte[] content() {
+        return content;
+    }
+
+    /**
+     * Note that the document was read past the prefix, so the prefix alone no longer decides whether it has a header.
+     */
+    void readPast() {
+        readPast = true;
+    }
+
+    /**
+     * The start of the file the verdict of the check depends on: the whole file when it fits in the prefix, or the
+     * prefix when the document was not read past it.
+     *
+     * @return the bytes, or null when the verdict depends on more of the file than the prefix
+     */
+    byte[] verdictBytes() {
+        return complete ? content : readPast ? null : head;
+    }
+
+    /**
+     * The number of bytes read from the file.
+     */
+    int bytes() {
+        return bytes;
+    }
+
+    /**
+     * The first lines that are complete in the prefix, without their terminators, split like {@code BufferedReader}.
+     */
+    List<String> lines(int max) {
+        List<String> lines = new ArrayList<String>();
+        int pos = 0;
+        int len = text.length();
+        while (lines.size() < max && pos < len) {
+            int end = pos;
+            while (end < len && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            if (end == len && !complete) {
+                // The line is cut off by the scan limit
+                break;
+            }
+            lines.add(text.substring(pos, end));
+            pos = end + 1;
+            if (end < len && text.charAt(end) == '\r' && pos < len && text.charAt(pos) == '\n') {
+                pos++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Whether the given number of lines of the file is known, when only the available lines could be split off.
+     */
+    boolean covers(int count, int available) {
+        return complete || available >= count;
+    }
+
+    /**
+     * The first lines, each terminated by a newline, like {@code FileUtils.readFirstLines}.
+     *
+     * @return the lines, or null when they do not all fit in the prefix
+     */
+    String firstLines(int count) {
+        List<String> lines = lines(count);
+        if (!covers(count, lines.size())) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Whether the header is present, using the same comparison as {@code Document#hasHeader(header, false)}.
+     *
+     * @return the outcome, or null when the prefix is too short to decide
+     */
+    Boolean hasHeader(Document document, Header header) {
+        String lines = firstLines(header.getLineCount() + 10);
+        if (lines == null) {
+            return null;
+        }
+        HeaderDefinition definition = document.getHeaderDefinition();
+        String firstLine = definition.getFirstLine().trim();
+        String endLine = definition.getEndLine().trim();
+        String beforeEachLine = definition.getBeforeEachLine().trim();
+
+        String fileHeader = lines.replaceAll(" *\r?\n", "\n");
+        String fileHeaderOneLine = remove(fileHeader, firstLine, endLine, beforeEachLine, "\n", "\r", "\t", " ");
+        String headerOneLine = document.mergeProperties(header.asOneLineString());
+        return fileHeaderOneLine.contains(remove(headerOneLine, firstLine, endLine, beforeEachLine));
+    }
+
+    static String remove(String str, String... chars) {
+        for (String s : chars) {
+            str = str.replace(s, "");
+        }
+        return str;
+    }
+}
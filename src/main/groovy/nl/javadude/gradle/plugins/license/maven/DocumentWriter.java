@@ -0,0 +1,178 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.document.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+
+/**
+ * Writes a document whose header was changed, without encoding and writing all of its content again.
+ *
+ * Only the start of a document changes when its header is removed or updated. The new start is encoded and the rest
+ * is copied from the original file with {@link FileChannel#transferTo}, into a temporary file that is then moved over
+ * the destination, or over the file it links to. A build that is killed halfway never leaves a partly written file
+ * behind.
+ */
+final class DocumentWriter {
+    private DocumentWriter() {
+    }
+
+    /**
+     * Write the document to the destination, which may be the file of the document itself.
+     *
+     * @param original the content of the document before its header was changed
+     * @return false when the destination is the file of the document and its content did not change
+     */
+    static boolean save(Document document, String original, File destination) throws IOException {
+        String updated = document.getContent();
+        Path source = document.getFile().toPath();
+        boolean inPlace = Files.exists(destination.toPath()) && Files.isSameFile(source, destination.toPath());
+        if (inPlace && updated.equals(original)) {
+            return false;
+        }
+
+        // The changed part of the content, the unchanged tail is only copied
+        int prefix = 0;
+        int max = Math.min(original.length(), updated.length());
+        while (prefix < max && original.charAt(prefix) == updated.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                        && original.charAt(original.length() - 1 - suffix) == updated.charAt(updated.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(original.charAt(original.length() - suffix))) {
+            // Keep a surrogate pair together
+            suffix--;
+        }
+
+        Charset charset = Charset.forName(document.getEncoding());
+        if (!concatenates(charset)) {
+            // Like UTF-16, which starts every encoded string with a byte order mark
+            suffix = 0;
+        }
+        FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+        try {
+            byte[] head = updated.substring(0, updated.length() - suffix).getBytes(charset);
+            long tail = tailOffset(in, original.substring(0, original.length() - suffix).getBytes(charset), inPlace, head);
+            if (tail < 0) {
+                return false;
+            }
+            if (tail == in.size() && suffix > 0) {
+                // The file does not encode to the parsed content, so its bytes cannot be copied
+                head = updated.getBytes(charset);
+            }
+            write(in, head, tail, source, destination.toPath());
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Whether encoding two strings one after the other gives the same bytes as encoding them together.
+     */
+    private static boolean concatenates(Charset charset) {
+        byte[] a = "a".getBytes(charset);
+        byte[] b = "b".getBytes(charset);
+        byte[] ab = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, ab, a.length, b.length);
+        return Arrays.equals(ab, "ab".getBytes(charset));
+    }
+
+    /**
+     * @return where the unchanged tail starts in the file, the size of the file when it cannot be copied, or -1 when
+     * the file starts with the new head already
+     */
+    private static long tailOffset(FileChannel in, byte[] originalHead, boolean inPlace, byte[] head) throws IOException {
+        if (originalHead.length > in.size()) {
+            return in.size();
+        }
+        ByteBuffer start = ByteBuffer.allocate(originalHead.length);
+        while (start.hasRemaining() && in.read(start, start.position()) != -1) {
+            // keep reading until the head is filled
+        }
+        if (start.hasRemaining() || !Arrays.equals(start.array(), originalHead)) {
+            return in.size();
+        }
+        if (inPlace && Arrays.equals(originalHead, head)) {
+            return -1;
+        }
+        return originalHead.length;
+    }
+
+    private static void write(FileChannel in, byte[] head, long tail, Path source, Path destination) throws IOException {
+        if (Files.exists(destination)) {
+            // Moving the file over a symbolic link would replace the link, the file it points to is replaced instead
+            destination = destination.toRealPath();
+        }
+        Path dir = destination.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "." + destination.getFileName(), ".tmp");
+        try {
+            FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(head);
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                long position = tail;
+                long size = in.size();
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0) {
+                        throw new IOException("File changed while adding its header: " + source);
+                    }
+                    position += transferred;
+                }
+            } finally {
+                out.close();
+            }
+            copyPermissions(Files.exists(destination) ? destination : source, tmp);
+            try {
+                Files.move(tmp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // The temporary file is only readable by its owner, it gets the permissions of the file it replaces
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView fromView = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView toView = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (fromView != null && toView != null) {
+            toView.setPermissions(fromView.readAttributes().permissions());
+        } else {
+            to.toFile().setExecutable(from.toFile().canExecute());
+            to.toFile().setWritable(from.toFile().canWrite());
+        }
+    }
+}
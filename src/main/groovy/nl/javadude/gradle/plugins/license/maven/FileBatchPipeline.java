@@ -0,0 +1,144 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.hierynomus.gradle.license.Timings;
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Feeds files to an executor in fixed size batches.
+ *
+ * At most {@code maxInFlight} batches are queued or running at any time, {@link #add(File)} blocks until a worker
+ * has finished a batch. This keeps the memory use flat, no matter how many files are fed through the pipeline.
+ */
+final class FileBatchPipeline {
+    interface FileProcessor {
+        void process(File file);
+    }
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final FileProcessor processor;
+    private final Timings timings;
+    private final Semaphore permits;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private List<File> batch;
+
+    /**
+     * @param timings records how long the batches wait for a worker as the "queue" phase
+     */
+    FileBatchPipeline(Executor executor, int maxInFlight, int batchSize, FileProcessor processor, Timings timings) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.processor = processor;
+        this.timings = timings;
+        this.permits = new Semaphore(maxInFlight);
+        this.batch = new ArrayList<File>(batchSize);
+    }
+
+    /**
+     * Add a file, blocks when the maximum number of batches is in flight.
+     * Rethrows the failure of an earlier batch, so no more files are fed after one has failed.
+     */
+    void add(File file) {
+        if (failure.get() != null) {
+            drain();
+            rethrowFailure();
+        }
+        batch.add(file);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Submit the last batch and wait for all batches to finish.
+     */
+    void finish() {
+        if (!batch.isEmpty() && failure.get() == null) {
+            submit();
+        }
+        drain();
+        rethrowFailure();
+    }
+
+    private void submit() {
+        final List<File> files = batch;
+        batch = new ArrayList<File>(batchSize);
+        acquire();
+        final long queued = System.nanoTime();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    timings.time("queue", queued);
+                    try {
+                        for (File file : files) {
+                            if (failure.get() != null) {
+                                return;
+                            }
+                            processor.process(file);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+            drain();
+            throw new GradleException("Interrupted while processing license headers", e);
+        }
+    }
+
+    // Wait until no batch is in flight, the running ones stop early once a failure is recorded
+    private void drain() {
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    private void rethrowFailure() {
+        Throwable cause = failure.get();
+        if (cause == null)
+            return;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        throw new GradleException(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Persistent record of the header check verdict of every file, keyed by the file content.
+ *
+ * An entry is only reused when the effective check configuration (header, mappings, properties, ...)
+ * has the same fingerprint as in the run that stored it, and the file still has the same content.
+ * The size and modification time of a file are compared first. The digest is only computed when the
+ * size is the same but the modification time is not, and the entry has a digest to compare with. The
+ * digest covers the start of the file the verdict depends on, which is the whole file when it fits in
+ * the scanned prefix, or else the prefix when the header was looked for in the prefix only. A new or
+ * resized file is checked right away, which only reads the start of the file.
+ */
+public class HeaderCheckCache {
+    private static final Logger logger = Logging.getLogger(HeaderCheckCache.class);
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final byte[] NO_DIGEST = new byte[0];
+
+    public enum Verdict {
+        /** A valid header was found */
+        OK,
+        /** The header is missing */
+        MISSING,
+        /** The file type is not supported */
+        UNSUPPORTED,
+        /** The file is the header file itself */
+        SKIPPED,
+        /** The file is binary */
+        BINARY
+    }
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final byte[] digest;
+        // The number of bytes at the start of the file the digest covers
+        final int digested;
+        final Verdict verdict;
+
+        Entry(long length, long lastModified, byte[] digest, int digested, Verdict verdict) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.digested = digested;
+            this.verdict = verdict;
+        }
+    }
+
+    private final File cacheFile;
+    private final Map<String, Entry> previous = new HashMap<String, Entry>();
+    private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, Entry> pending = new ConcurrentHashMap<String, Entry>();
+    private String fingerprint;
+
+    public HeaderCheckCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Load the entries stored by a previous run, they are discarded if that run used another configuration.
+     *
+     * @return whether the previous entries are usable
+     */
+    public boolean load(String fingerprint) {
+        this.fingerprint = fingerprint;
+        previous.clear();
+        if (!cacheFile.isFile()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != FORMAT_VERSION || !fingerprint.equals(in.readUTF())) {
+                logger.info("Header check configuration changed, ignoring {}", cacheFile);
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                byte[] digest = new byte[in.readUnsignedByte()];
+                in.readFully(digest);
+                int digested = in.readInt();
+                Verdict verdict = Verdict.values()[in.readUnsignedByte()];
+                previous.put(path, new Entry(length, lastModified, digest, digested, verdict));
+            }
+            logger.debug("Loaded {} header check verdicts from {}", count, cacheFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.info("Unable to read {}, checking all files", cacheFile, e);
+            previous.clear();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Look up the verdict of a previous run.
+     *
+     * @return the verdict, or null when the file has to be checked
+     */
+    public Verdict lookup(File file) {
+        String path = file.getAbsolutePath();
+        Entry entry = previous.get(path);
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+            current.put(path, entry);
+            return entry.verdict;
+        }
+
+        // Only a file that was touched without changing its size can still have the same start
+        if (entry != null && entry.length == length && entry.digest.length > 0) {
+            try {
+                byte[] digest = digest(file, entry.digested);
+                if (Arrays.equals(entry.digest, digest)) {
+                    current.put(path, new Entry(length, lastModified, digest, entry.digested, entry.verdict));
+                    return entry.verdict;
+                }
+            } catch (IOException e) {
+                logger.debug("Unable to digest {}", file, e);
+            }
+        }
+        // The size and modification time are taken before the file is checked, so a concurrent edit is seen next run
+        pending.put(path, new Entry(length, lastModified, NO_DIGEST, 0, null));
+        return null;
+    }
+
+    /**
+     * Carry the verdicts of the previous run over for all files that are neither changed nor removed, which is what
+     * an incremental run needs as it only looks up the changed files.
+     *
+     * @return the carried over verdicts, by file
+     */
+    public Map<File, Verdict> retainUnchanged(Collection<File> changed, Collection<File> removed) {
+        Set<String> skip = new HashSet<String>();
+        for (File file : changed) {
+            skip.add(file.getAbsolutePath());
+        }
+        for (File file : removed) {
+            skip.add(file.getAbsolutePath());
+        }
+        Map<File, Verdict> retained = new LinkedHashMap<File, Verdict>();
+        for (Map.Entry<String, Entry> e : previous.entrySet()) {
+            if (!skip.contains(e.getKey())) {
+                current.put(e.getKey(), e.getValue());
+                retained.put(new File(e.getKey()), e.getValue().verdict);
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Remember the verdict for a file that was looked up and then checked.
+     *
+     * @param start the start of the file the verdict depends on, as it was checked, or null when the verdict depends
+     *              on more of the file than was read
+     */
+    public void record(File file, Verdict verdict, byte[] start) {
+        String path = file.getAbsolutePath();
+        Entry probe = pending.remove(path);
+        if (probe != null) {
+            // The bytes were read to check the file, so the digest comes for free and touching the file does not
+            // invalidate its verdict
+            boolean digestable = start != null && start.length <= probe.length;
+            byte[] digest = digestable ? newDigest().digest(start) : NO_DIGEST;
+            current.put(path, new Entry(probe.length, probe.lastModified, digest, digestable ? start.length : 0, verdict));
+        }
+    }
+
+    /**
+     * Remember the verdict for a file that follows from its name, which is never read. As the mapping of the extensions
+     * is part of the fingerprint, the verdict stays valid for as long as the file exists.
+     */
+    public void remember(File file, Verdict verdict) {
+        current.put(file.getAbsolutePath(), new Entry(-1, -1, NO_DIGEST, 0, verdict));
+    }
+
+    /**
+     * Store the verdicts of all files that were looked up or retained during this run, which drops the deleted files.
+     */
+    public void save() throws IOException {
+        if (fingerprint == null) {
+            throw new IllegalStateException("The header check cache was never loaded");
+        }
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File tmp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(current.size());
+            for (Map.Entry<String, Entry> e : current.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.length);
+                out.writeLong(entry.lastModified);
+                out.writeByte(entry.digest.length);
+                out.write(entry.digest);
+                out.writeInt(entry.digested);
+                out.writeByte(entry.verdict.ordinal());
+            }
+            out.close();
+            out = null;
+            try {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.debug("Stored {} header check verdicts in {}", current.size(), cacheFile);
+        } finally {
+            closeQuietly(out);
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Forget the verdicts of previous runs, for a run that stopped before every file was looked up.
+     */
+    public void discard() throws IOException {
+        current.clear();
+        Files.deleteIfExists(cacheFile.toPath());
+    }
+
+    /**
+     * Compute a stable fingerprint over the given configuration values.
+     */
+    public static String fingerprint(Iterable<String> values) {
+        MessageDigest md = newDigest();
+        for (String value : values) {
+            md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+        }
+        return toHex(md.digest());
+    }
+
+    // The digest of the first bytes of the file
+    private static byte[] digest(File file, int length) throws IOException {
+        MessageDigest md = newDigest();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int remaining = length;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, Math.min(buffer.length, remaining))) != -1) {
+                md.update(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            in.close();
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven;
+
+import com.mycila.maven.plugin.license.document.Document;
+import com.mycila.maven.plugin.license.header.Header;
+import com.mycila.maven.plugin.license.header.HeaderDefinition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks for the header and all valid headers in a single pass over the start of a file.
+ *
+ * The comparison is the one of {@code Document#hasHeader(header, false)}: the first lines of the file and the header
+ * are stripped of the comment tokens and all whitespace, after which the file has to contain the header. Rendering
+ * and stripping the headers only happens once per comment style, the stripped headers are then matched together
+ * with an Aho-Corasick automaton. Only a header that uses the ${file.name} property is rendered for every file.
+ */
+final class HeaderMatcher {
+    private final List<Header> headers;
+    private final boolean[] perDocument;
+    private final ConcurrentMap<String, Patterns> patterns = new ConcurrentHashMap<String, Patterns>();
+
+    /**
+     * @param headers the header and the valid headers, a file that contains any of them has a header
+     * @param perDocument for every header, whether it references a property that differs between documents
+     */
+    HeaderMatcher(List<Header> headers, boolean[] perDocument) {
+        this.headers = headers;
+        this.perDocument = perDocument;
+    }
+
+    /**
+     * Whether the start of the document contains any of the headers, reading the document only for the headers that
+     * do not fit in the prefix.
+     */
+    boolean matches(Document document, DocumentPrefix prefix) {
+        Patterns p = patternsFor(document);
+        if (!p.lineByLine) {
+            // A comment token spanning lines can only be removed from the text as a whole
+            for (Header header : headers) {
+                Boolean found = prefix.hasHeader(document, header);
+                if (found == null) {
+                    prefix.readPast();
+                    found = document.hasHeader(header, false);
+                }
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<String> lines = prefix.lines(p.maxWindow);
+        StringBuilder text = new StringBuilder();
+        int[] offsets = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            text.append(p.normalize(lines.get(i)));
+            offsets[i + 1] = text.length();
+        }
+
+        if (p.automaton.find(text, offsets)) {
+            return true;
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            if (!perDocument[i]) {
+                continue;
+            }
+            String needle = p.strip(document.mergeProperties(headers.get(i).asOneLineString()));
+            int index = text.indexOf(needle);
+            if (index >= 0 && index + needle.length() <= offsets[Math.min(p.windows[i], lines.size())]) {
+                return true;
+            }
+        }
+        // Only the headers with more lines than the prefix holds are still undecided
+        for (int i = 0; i < headers.size(); i++) {
+            if (prefix.covers(p.windows[i], lines.size())) {
+                continue;
+            }
+            prefix.readPast();
+            if (document.hasHeader(headers.get(i), false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Patterns patternsFor(Document document) {
+        HeaderDefinition definition = document.getHeaderDefinition();
+        Patterns p = patterns.get(definition.getType());
+        if (p == null) {
+            // The document only contributes the properties, which are the same for all headers that are not per document
+            p = new Patterns(definition, document);
+            Patterns existing = patterns.putIfAbsent(definition.getType(), p);
+            if (existing != null) {
+                p = existing;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * The stripped headers for one comment style.
+     */
+    private final class Patterns {
+        final String firstLine;
+        final String endLine;
+        final String beforeEachLine;
+        final boolean lineByLine;
+        final int[] windows;
+        final int maxWindow;
+        final Automaton automaton;
+
+        Patterns(HeaderDefinition definition, Document document) {
+            firstLine = definition.getFirstLine().trim();
+            endLine = definition.getEndLine().trim();
+            beforeEachLine = definition.getBeforeEachLine().trim();
+            lineByLine = !(spansLines(firstLine) || spansLines(endLine) || spansLines(beforeEachLine));
+
+            windows = new int[headers.size()];
+            int max = 0;
+            automaton = new Automaton();
+            for (int i = 0; i < headers.size(); i++) {
+                Header header = headers.get(i);
+                // Document#hasHeader reads this many lines to look for the header
+                windows[i] = header.getLineCount() + 10;
+                max = Math.max(max, windows[i]);
+                if (!perDocument[i]) {
+                    automaton.add(strip(document.mergeProperties(header.asOneLineString())), windows[i]);
+                }
+            }
+            maxWindow = max;
+            automaton.build();
+        }
+
+        String strip(String header) {
+            return DocumentPrefix.remove(header, firstLine, endLine, beforeEachLine);
+        }
+
+        // Equal to stripping the lines joined by newlines, as no token spans a line
+        String normalize(String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return DocumentPrefix.remove(line.substring(0, end), firstLine, endLine, beforeEachLine, "\r", "\t", " ");
+        }
+
+        private boolean spansLines(String token) {
+            return token.indexOf('\n') >= 0 || token.indexOf('\r') >= 0;
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton over the stripped headers. Every state knows the largest window of the headers ending
+     * in it, so a match only counts when it ends within the first lines that header is looked for in.
+     */
+    private static final class Automaton {
+        private final List<Map<Character, Integer>> next = new ArrayList<Map<Character, Integer>>();
+        private final List<Integer> fail = new ArrayList<Integer>();
+        private final List<Integer> window = new ArrayList<Integer>();
+
+        Automaton() {
+            newState();
+        }
+
+        void add(String pattern, int lines) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer target = next.get(state).get(pattern.charAt(i));
+                if (target == null) {
+                    target = newState();
+                    next.get(state).put(pattern.charAt(i), target);
+                }
+                state = target;
+            }
+            window.set(state, Math.max(window.get(state), lines));
+        }
+
+        void build() {
+            LinkedList<Integer> queue = new LinkedList<Integer>();
+            for (Integer child : next.get(0).values()) {
+                fail.set(child, 0);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.removeFirst();
+                for (Map.Entry<Character, Integer> edge : next.get(state).entrySet()) {
+                    int child = edge.getValue();
+                    int f = fail.get(state);
+                    while (f > 0 && !next.get(f).containsKey(edge.getKey())) {
+                        f = fail.get(f);
+                    }
+                    Integer target = next.get(f).get(edge.getKey());
+                    int failTo = target != null ? target : 0;
+                    fail.set(child, failTo);
+                    window.set(child, Math.max(window.get(child), window.get(failTo)));
+                    queue.add(child);
+                }
+            }
+        }
+
+        /**
+         * @param offsets the length of the text after every line, starting with 0
+         */
+        boolean find(CharSequence text, int[] offsets) {
+            int lines = offsets.length - 1;
+            if (window.get(0) > 0) {
+                // An empty header is in every file
+                return true;
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                while (state > 0 && !next.get(state).containsKey(c)) {
+                    state = fail.get(state);
+                }
+                Integer target = next.get(state).get(c);
+                state = target == null ? 0 : target;
+                int w = window.get(state);
+                if (w > 0 && i + 1 <= offsets[Math.min(w, lines)]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int newState() {
+            next.add(new HashMap<Character, Integer>());
+            fail.add(0);
+            window.add(0);
+            return next.size() - 1;
+        }
+    }
+}
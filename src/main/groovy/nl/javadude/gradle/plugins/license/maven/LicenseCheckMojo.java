@@ -18,9 +18,19 @@ package nl.javadude.gradle.plugins.license.maven;
 import com.mycila.maven.plugin.license.document.Document;
 import com.mycila.maven.plugin.license.header.Header;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -33,7 +43,8 @@ import org.gradle.api.logging.Logging;
 public final class LicenseCheckMojo implements CallbackWithFailure {
     Logger logger = Logging.getLogger(LicenseCheckMojo.class);
     private final File basedir;
-    public final Collection<File> missingHeaders = new ConcurrentLinkedQueue<File>();
+    public final Collection<File> missingHeaders = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+    private final ConcurrentMap<File, HeaderCheckCache.Verdict> verdicts = new ConcurrentHashMap<File, HeaderCheckCache.Verdict>();
 
     /**
      * Whether to skip file where a header has been detected
@@ -47,16 +58,90 @@ public final class LicenseCheckMojo implements CallbackWithFailure {
 
     @Override
     public void onHeaderNotFound(Document document, Header header) {
-        document.parseHeader();
-        if (document.headerDetected() && skipExistingHeaders) {
-            logger.info("Ignoring header in: {}", DocumentFactory.getRelativeFile(basedir, document));
-            return;
-        } else {
-            logger.lifecycle("Missing header in: {}", DocumentFactory.getRelativeFile(basedir, document));
+        // Parsing reads the whole document, which is only needed to find out whether there is another header
+        if (skipExistingHeaders) {
+            document.parseHeader();
+            if (document.headerDetected()) {
+                logger.info("Ignoring header in: {}", DocumentFactory.getRelativeFile(basedir, document));
+                return;
+            }
         }
+        logger.lifecycle("Missing header in: {}", DocumentFactory.getRelativeFile(basedir, document));
         missingHeaders.add(document.getFile());
     }
 
+    /**
+     * Replay a missing header remembered by the {@link HeaderCheckCache}, for a file that was not checked again.
+     */
+    public void onCachedHeaderNotFound(File file) {
+        logger.lifecycle("Missing header in: {}", DocumentFactory.getRelativeFile(basedir, file));
+        missingHeaders.add(file);
+    }
+
+    /**
+     * Replay an existing header remembered by the {@link HeaderCheckCache}, for a file that was not checked again.
+     */
+    public void onCachedExistingHeader(File file) {
+        logger.info("Header OK in: {}", DocumentFactory.getRelativeFile(basedir, file));
+    }
+
+    /**
+     * Remember the verdict for a file, checked or replayed, for the {@link #writeReport(File) report}.
+     */
+    void onVerdict(File file, HeaderCheckCache.Verdict verdict) {
+        verdicts.put(file, verdict);
+    }
+
+    /**
+     * Write the verdict of every file, sorted by its path relative to the base directory. The report only holds what
+     * follows from the checked files, so the same sources give the same report wherever they are checked out.
+     */
+    public void writeReport(File report) throws IOException {
+        writeReport(report, Collections.singletonList(this));
+    }
+
+    /**
+     * Write the verdicts of several checks in a single report. A file that is checked with different settings is
+     * missing a header when one of the checks says so.
+     */
+    public static void writeReport(File report, Collection<LicenseCheckMojo> checks) throws IOException {
+        Map<String, HeaderCheckCache.Verdict> sorted = new TreeMap<String, HeaderCheckCache.Verdict>();
+        int missing = 0;
+        for (LicenseCheckMojo check : checks) {
+            for (Map.Entry<File, HeaderCheckCache.Verdict> verdict : check.verdicts.entrySet()) {
+                String path = DocumentFactory.getRelativeFile(check.basedir, verdict.getKey()).replace(File.separatorChar, '/');
+                HeaderCheckCache.Verdict previous = sorted.get(path);
+                if (previous == HeaderCheckCache.Verdict.MISSING) {
+                    continue;
+                }
+                if (verdict.getValue() == HeaderCheckCache.Verdict.MISSING) {
+                    missing++;
+                }
+                if (previous == null || verdict.getValue() == HeaderCheckCache.Verdict.MISSING) {
+                    sorted.put(path, verdict.getValue());
+                }
+            }
+        }
+        File parent = report.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8));
+        try {
+            writer.write("checked " + sorted.size() + "\n");
+            writer.write("missing " + missing + "\n");
+            for (Map.Entry<String, HeaderCheckCache.Verdict> verdict : sorted.entrySet()) {
+                writer.write(verdict.getValue() + " " + verdict.getKey() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    boolean isMissing(File file) {
+        return missingHeaders.contains(file);
+    }
+
     @Override
     public void onUnknownFile(Document document, Header header) {
         logger.error("Unknown file: {}", DocumentFactory.getRelativeFile(basedir, document));
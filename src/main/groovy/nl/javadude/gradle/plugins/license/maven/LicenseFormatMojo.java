@@ -15,10 +15,12 @@
  */
 package nl.javadude.gradle.plugins.license.maven;
 
+import com.hierynomus.gradle.license.Timings;
 import com.mycila.maven.plugin.license.document.Document;
 import com.mycila.maven.plugin.license.header.Header;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -52,25 +54,49 @@ public final class LicenseFormatMojo implements CallbackWithFailure {
 
     public final Collection<File> missingHeaders = new ConcurrentLinkedQueue<File>();
 
+    private Timings timings = new Timings("format", 0);
+
+    /**
+     * Record the time spent parsing and updating the documents as the "format" phase, and writing them as "save".
+     */
+    public void setTimings(Timings timings) {
+        this.timings = timings;
+    }
+
     public void onHeaderNotFound(Document document, Header header) {
+        long start = System.nanoTime();
+        // Parsing reads the whole document
+        timings.count("bytes", document.getFile().length());
         document.parseHeader();
+        if (document.headerDetected() && skipExistingHeaders) {
+            logger.info("Keeping license header in: {}", DocumentFactory.getRelativeFile(basedir, document));
+            timings.time("format", start);
+            return;
+        }
+        String original = document.getContent();
         if (document.headerDetected()) {
-            if (skipExistingHeaders) {
-                logger.info("Keeping license header in: {}", DocumentFactory.getRelativeFile(basedir, document));
-                return;
-            } else
-                document.removeHeader();
+            document.removeHeader();
         }
-        logger.lifecycle("Updating license header in: {}", DocumentFactory.getRelativeFile(basedir, document));
         document.updateHeader(header);
-        missingHeaders.add(document.getFile());
-        if (!dryRun) {
-            document.save();
-        } else {
+        start = timings.time("format", start);
+        File destination = document.getFile();
+        if (dryRun) {
             String name = document.getFile().getName() + ".licensed";
-            File copy = new File(document.getFile().getParentFile(), name);
-            logger.debug("Result saved to: {}", copy);
-            document.saveTo(copy);
+            destination = new File(document.getFile().getParentFile(), name);
+            logger.debug("Result saved to: {}", destination);
+        }
+        boolean written;
+        try {
+            written = DocumentWriter.save(document, original, destination);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write new header in file " + destination + ". Cause: " + e.getMessage(), e);
+        }
+        timings.time("save", start);
+        if (written) {
+            logger.lifecycle("Updating license header in: {}", DocumentFactory.getRelativeFile(basedir, document));
+            missingHeaders.add(document.getFile());
+        } else {
+            logger.info("Header unchanged in: {}", DocumentFactory.getRelativeFile(basedir, document));
         }
     }
 
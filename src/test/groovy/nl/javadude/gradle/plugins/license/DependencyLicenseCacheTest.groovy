@@ -0,0 +1,76 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static nl.javadude.gradle.plugins.license.DownloadLicensesExtension.license
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class DependencyLicenseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldKeepLicensesBetweenBuilds() {
+        def fingerprint = DependencyLicenseCache.fingerprint([:], false)
+        def cache = new DependencyLicenseCache(folder.root, fingerprint)
+        cache.load()
+        cache.put("org.example:lib:1.0", new DependencyMetadata(dependency: "org.example:lib:1.0", dependencyFileName: "lib-1.0.jar",
+                licenseMetadataList: [license("Apache 2", "http://www.apache.org/licenses/LICENSE-2.0"), license("MIT")]))
+        cache.save()
+
+        def next = new DependencyLicenseCache(folder.root, fingerprint)
+        next.load()
+
+        def metadata = next.get("org.example:lib:1.0")
+        assertThat metadata.dependency, is("org.example:lib:1.0")
+        assertThat metadata.dependencyFileName, is(nullValue())
+        assertThat metadata.licenseMetadataList, equalTo([license("Apache 2", "http://www.apache.org/licenses/LICENSE-2.0"), license("MIT")])
+        assertThat next.get("org.example:other:1.0"), is(nullValue())
+    }
+
+    @Test
+    public void shouldLoadTheContentReadByTheCaller() {
+        def fingerprint = DependencyLicenseCache.fingerprint([:], false)
+        def cache = new DependencyLicenseCache(folder.root, fingerprint)
+        cache.put("org.example:lib:1.0", new DependencyMetadata(dependency: "org.example:lib:1.0", licenseMetadataList: [license("MIT")]))
+        cache.save()
+
+        def next = new DependencyLicenseCache(folder.root, fingerprint)
+        next.load(next.cacheFile.bytes)
+        assertThat next.get("org.example:lib:1.0").licenseMetadataList, equalTo([license("MIT")])
+
+        next.load((byte[]) null)
+        assertThat next.get("org.example:lib:1.0"), is(nullValue())
+    }
+
+    @Test
+    public void shouldSeparateAliasConfigurations() {
+        def apacheTwo = license("Apache License, Version 2.0")
+        def fingerprint = DependencyLicenseCache.fingerprint([(apacheTwo): ["Apache 2"]], false)
+
+        assertThat DependencyLicenseCache.fingerprint([(apacheTwo): ["Apache 2"]], false), is(fingerprint)
+        assertThat DependencyLicenseCache.fingerprint([(apacheTwo): ["Apache 2", "ASL 2"]], false), not(fingerprint)
+        assertThat DependencyLicenseCache.fingerprint([(apacheTwo): [license("Apache 2")]], false), not(fingerprint)
+        assertThat DependencyLicenseCache.fingerprint([(apacheTwo): ["Apache 2"]], true), not(fingerprint)
+    }
+}
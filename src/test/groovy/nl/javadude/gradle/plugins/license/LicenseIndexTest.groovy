@@ -0,0 +1,56 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.junit.Test
+
+import static nl.javadude.gradle.plugins.license.DownloadLicensesExtension.group
+import static nl.javadude.gradle.plugins.license.DownloadLicensesExtension.license
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class LicenseIndexTest {
+
+    @Test
+    public void shouldUseFirstConfiguredLicense() {
+        def index = new LicenseIndex([(group("org.example")): "Group", "org.example:lib:1.0": "Exact"], [:])
+
+        assertThat index.findLicense("org.example", "org.example:lib:1.0").value, is("Group")
+        assertThat index.findLicense("org.other", "org.other:lib:1.0"), is(nullValue())
+    }
+
+    @Test
+    public void shouldPreferExactDependencyConfiguredFirst() {
+        def index = new LicenseIndex(["org.example:lib:1.0": "Exact", (group("org.example")): "Group"], [:])
+
+        assertThat index.findLicense("org.example", "org.example:lib:1.0").value, is("Exact")
+        assertThat index.findLicense("org.example", "org.example:other:1.0").value, is("Group")
+    }
+
+    @Test
+    public void shouldResolveFirstMatchingAlias() {
+        def apache = license("Apache License, Version 2.0", "http://www.apache.org/licenses/LICENSE-2.0")
+        def mit = license("MIT License", "http://opensource.org/licenses/MIT")
+        def index = new LicenseIndex([:], [
+                (apache): ["The Apache Software License, Version 2.0", license("Apache 2", "http://apache.org")],
+                (mit)   : ["MIT", license("Apache 2", "http://apache.org")]])
+
+        assertThat index.resolveAlias(license("Apache 2", "http://apache.org")), is(apache)
+        assertThat index.resolveAlias(license("MIT", "http://example.org")), is(mit)
+        assertThat index.resolveAlias(license("GPL", null)), is(license("GPL", null))
+    }
+}
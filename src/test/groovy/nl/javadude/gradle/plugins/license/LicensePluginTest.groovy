@@ -19,6 +19,7 @@ package nl.javadude.gradle.plugins.license
 
 import com.hierynomus.gradle.license.LicenseBasePlugin
 import com.hierynomus.gradle.license.tasks.LicenseCheck
+import com.hierynomus.gradle.license.tasks.LicenseCheckAll
 import com.hierynomus.gradle.license.tasks.LicenseFormat
 import nl.javadude.gradle.plugins.license.header.HeaderDefinitionBuilder
 import org.gradle.api.Project
@@ -73,6 +74,7 @@ class LicensePluginTest {
         assertThat project.license.skipExistingHeaders, is(false)
         assertThat project.license.useDefaultMappings, is(true)
         assertThat project.license.strictCheck, is(false)
+        assertThat project.license.failFast, is(false)
     }
 
     @Test
@@ -154,6 +156,35 @@ class LicensePluginTest {
         assertThat dependsOnFormat, hasItem(formatTask)
     }
     
+    @Test
+    public void shouldAddAggregateTaskToRootProjectOnly() {
+        Project subproject = ProjectBuilder.builder().withName("sub").withParent(project).build()
+        subproject.plugins.apply(LicenseBasePlugin)
+
+        assertThat project.tasks.findByName('licenseAll'), instanceOf(LicenseCheckAll)
+        assertThat subproject.tasks.findByName('licenseAll'), nullValue()
+    }
+
+    @Test
+    public void aggregateTaskShouldInheritIgnoreFailuresFromExtension() {
+        project.license.ignoreFailures = true
+
+        assertThat project.tasks['licenseAll'].ignoreFailures, is(true)
+    }
+
+    @Test
+    public void tasksShouldTakeChangedFilesModeFromProjectProperties() {
+        Project subproject = ProjectBuilder.builder().withName("sub").withParent(project).build()
+        subproject.ext['license.changedSince'] = 'HEAD'
+        subproject.ext['license.failFast'] = 'true'
+        subproject.plugins.apply(LicenseBasePlugin)
+        subproject.apply plugin: 'java'
+
+        assertThat project.license.changedSince, nullValue()
+        assertThat subproject.tasks['licenseMain'].changedSince.get(), is('HEAD')
+        assertThat subproject.tasks['licenseMain'].failFast.get(), is(true)
+    }
+
     @Test
     public void canAddMappingsAtMultipleLevels() {
         project.apply plugin: 'java'
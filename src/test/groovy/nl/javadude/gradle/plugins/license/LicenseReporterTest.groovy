@@ -0,0 +1,83 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import groovy.json.JsonSlurper
+import groovy.xml.XmlSlurper
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static nl.javadude.gradle.plugins.license.DownloadLicensesExtension.license
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class LicenseReporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    File xml
+    File html
+    File json
+    LicenseReporter reporter
+
+    Set<DependencyMetadata> dependencies = [
+            new DependencyMetadata(dependency: "org.example:a:1.0", dependencyFileName: "a-1.0.jar",
+                    licenseMetadataList: [license("Apache 2", "http://www.apache.org/licenses/LICENSE-2.0"), license("MIT")]),
+            new DependencyMetadata(dependency: "org.example:b:1.0", dependencyFileName: "b & <b>-1.0.jar",
+                    licenseMetadataList: [license("MIT")])
+    ] as LinkedHashSet
+
+    @Before
+    public void setupReporter() {
+        xml = folder.newFolder("xml")
+        html = folder.newFolder("html")
+        json = folder.newFolder("json")
+        reporter = new LicenseReporter(xmlOutputDir: xml, htmlOutputDir: html, jsonOutputDir: json)
+    }
+
+    @Test
+    public void shouldWriteAllReportsInOnePass() {
+        reporter.generateReports(dependencies, "dependency-license", "license-dependency", true, true, true)
+
+        def byDependency = new XmlSlurper().parse(new File(xml, "dependency-license.xml"))
+        assertThat byDependency.dependency.size(), is(2)
+        assertThat byDependency.dependency[1].file.text(), is("b & <b>-1.0.jar")
+        assertThat byDependency.dependency[0].license*.@name*.text(), equalTo(["Apache 2", "MIT"])
+
+        def byLicense = new XmlSlurper().parse(new File(xml, "license-dependency.xml"))
+        assertThat byLicense.license.find { it.@name == "MIT" }.dependency*.text() as Set, equalTo(["a-1.0.jar", "b & <b>-1.0.jar"] as Set)
+
+        def jsonByLicense = new JsonSlurper().parse(new File(json, "license-dependency.json"))
+        assertThat jsonByLicense.licences.find { it.name == "Apache 2" }.dependencies, equalTo(["a-1.0.jar"])
+        assertThat new JsonSlurper().parse(new File(json, "dependency-license.json")).dependencies*.name, equalTo(["org.example:a:1.0", "org.example:b:1.0"])
+
+        assertThat new File(html, "dependency-license.html").text, containsString("b &amp; &lt;b&gt;-1.0.jar")
+        assertThat new File(html, "license-dependency.html").isFile(), is(true)
+    }
+
+    @Test
+    public void shouldOnlyWriteRequestedReports() {
+        reporter.generateReports(dependencies, null, "license-dependency", false, false, true)
+
+        assertThat json.list() as List, equalTo(["license-dependency.json"])
+        assertThat xml.list().length, is(0)
+        assertThat html.list().length, is(0)
+    }
+}
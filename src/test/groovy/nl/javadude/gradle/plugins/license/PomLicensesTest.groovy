@@ -0,0 +1,93 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import javax.xml.stream.XMLStreamException
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class PomLicensesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldReadLicensesAndParent() {
+        def pom = read('''<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+  <parent>
+    <groupId> org.apache </groupId>
+    <artifactId>apache</artifactId>
+    <version>21</version>
+  </parent>
+  <licenses>
+    <license>
+      <name> Apache License, Version 2.0 </name>
+      <url>https://www.apache.org/licenses/LICENSE-2.0.txt</url>
+    </license>
+    <license>
+      <name><![CDATA[MIT]]></name>
+    </license>
+  </licenses>
+</project>
+''')
+
+        assertThat pom.licenses, equalTo([
+                new LicenseMetadata("Apache License, Version 2.0", "https://www.apache.org/licenses/LICENSE-2.0.txt"),
+                new LicenseMetadata("MIT", "")])
+        assertThat pom.parent, is("org.apache:apache:21")
+    }
+
+    @Test
+    public void shouldStopAfterTheLicenses() {
+        def pom = read('''<project>
+  <licenses><license><name>MIT</name></license></licenses>
+  <dependencyManagement> &undeclared;
+''')
+
+        assertThat pom.licenses*.licenseName, equalTo(["MIT"])
+    }
+
+    @Test
+    public void shouldReadParentDeclaredAfterEmptyLicenses() {
+        def pom = read('''<project>
+  <licenses/>
+  <dependencies><dependency><licenses><license><name>MIT</name></license></licenses></dependency></dependencies>
+  <parent><groupId>g</groupId><artifactId>a</artifactId><version>1</version></parent>
+</project>
+''')
+
+        assertThat pom.licenses.isEmpty(), is(true)
+        assertThat pom.parent, is("g:a:1")
+    }
+
+    @Test(expected = XMLStreamException)
+    public void shouldFailOnMalformedPom() {
+        read('''<project><licenses><license><name>MIT</name></licenses></project>''')
+    }
+
+    private PomLicenses read(String content) {
+        File pom = folder.newFile("pom.xml")
+        pom.text = content
+        PomLicenses.read(pom)
+    }
+}
@@ -0,0 +1,63 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license
+
+import com.hierynomus.gradle.license.Timings
+import groovy.json.JsonSlurper
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.util.concurrent.TimeUnit
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class TimingsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldKeepSlowestItems() {
+        def timings = new Timings(":licenseMain", 3)
+        [5, 1, 9, 3, 7].each { timings.item("File${it}.java", TimeUnit.MILLISECONDS.toNanos(it)) }
+
+        assertThat timings.slowest*.name, equalTo(["File9.java", "File7.java", "File5.java"])
+    }
+
+    @Test
+    public void shouldWriteCountersAndPhases() {
+        def timings = new Timings(":licenseMain", 10)
+        timings.count("files", 2)
+        timings.count("bytes", 2048)
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5)
+        timings.time("match", start)
+        timings.item("File.java", TimeUnit.MILLISECONDS.toNanos(5))
+        timings.stop()
+
+        def file = new File(folder.root, "reports/timings.json")
+        timings.write(file)
+
+        def json = new JsonSlurper().parse(file)
+        assertThat json.name, is(":licenseMain")
+        assertThat json.counters, equalTo([files: 2, bytes: 2048])
+        assertThat json.phaseMillis.match >= 5, is(true)
+        assertThat json.slowest*.name, equalTo(["File.java"])
+        assertThat timings.summary(), startsWith(":licenseMain: 2 files, 2048 bytes in ")
+    }
+}
@@ -0,0 +1,90 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class AbstractLicenseMojoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldFindPropertiesReferencedByTheHeader() {
+        assertThat AbstractLicenseMojo.referencedProperties('Copyright ${year} {{ owner }}'), equalTo(['year', 'owner'] as Set)
+    }
+
+    @Test
+    public void shouldFindPropertyOfPlaceholderWithDefault() {
+        assertThat AbstractLicenseMojo.referencedProperties('created in ${year:1999}'), equalTo(['year:1999', 'year'] as Set)
+    }
+
+    @Test
+    public void shouldShareConfiguredValueOfPlaceholderWithDefault() {
+        def properties = AbstractLicenseMojo.sharedProperties([year: '2012', owner: 'me', unused: 'x'],
+                AbstractLicenseMojo.referencedProperties('created in ${year:1999} by ${owner}'))
+
+        assertThat properties.getProperty('year'), is('2012')
+        assertThat properties.getProperty('owner'), is('me')
+        assertThat properties.containsKey('unused'), is(false)
+    }
+
+    @Test
+    public void shouldShareAllPropertiesForNestedPlaceholder() {
+        def properties = AbstractLicenseMojo.sharedProperties([year: '2012', owner: 'me'],
+                AbstractLicenseMojo.referencedProperties('created in ${year:${owner}}'))
+
+        assertThat properties.stringPropertyNames(), equalTo(['year', 'owner'] as Set)
+    }
+
+    @Test
+    public void shouldSharePropertiesReferencedByValues() {
+        def properties = AbstractLicenseMojo.sharedProperties([owner: '${company:ACME}', company: 'Example'],
+                AbstractLicenseMojo.referencedProperties('by ${owner}'))
+
+        assertThat properties.getProperty('company'), is('Example')
+    }
+
+    @Test
+    public void shouldCheckAgainWhenValueOfPlaceholderWithDefaultChanges() {
+        def header = folder.newFile("LICENSE")
+        header.text = 'Created in ${year:1999}'
+        def file = folder.newFile("test.properties")
+        file.text = "# Created in 2012\nkey = value\n"
+        def cache = new File(folder.root, "header-check.cache")
+
+        def checked = check(header, file, cache, [year: '2012'])
+        def changed = check(header, file, cache, [year: '2013'])
+
+        assertThat checked.hadFailure(), is(false)
+        assertThat changed.hadFailure(), is(true)
+    }
+
+    private LicenseCheckMojo check(File header, File file, File cache, Map<String, String> properties) {
+        def mojo = new AbstractLicenseMojo([], folder.root, properties, false, false, true, false, header.toURI(), [file],
+                [:], "UTF-8", [])
+        mojo.headerCheckCache = new HeaderCheckCache(cache)
+        def callback = new LicenseCheckMojo(folder.root, false)
+        mojo.execute(callback)
+        return callback
+    }
+}
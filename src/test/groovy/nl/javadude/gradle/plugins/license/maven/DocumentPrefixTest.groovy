@@ -0,0 +1,128 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.nio.charset.StandardCharsets
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class DocumentPrefixTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldKeepWholeFileThatFitsInThePrefix() {
+        def prefix = read("first\nsecond\n", 64)
+
+        assertThat prefix.lines(10), equalTo(["first", "second"])
+        assertThat prefix.firstLines(5), is("first\nsecond\n")
+        assertThat prefix.covers(5, 2), is(true)
+        assertThat prefix.content(), equalTo("first\nsecond\n".getBytes(StandardCharsets.UTF_8))
+    }
+
+    @Test
+    public void shouldLeaveOutLineThatIsCutOff() {
+        def prefix = read("first\nsecond\nthird line\n", 16)
+
+        assertThat prefix.bytes(), is(16)
+        assertThat prefix.lines(10), equalTo(["first", "second"])
+        assertThat prefix.covers(2, 2), is(true)
+        assertThat prefix.covers(3, 2), is(false)
+        assertThat prefix.firstLines(2), is("first\nsecond\n")
+        assertThat prefix.firstLines(3), nullValue()
+        assertThat prefix.content(), nullValue()
+    }
+
+    @Test
+    public void shouldOnlyDecideTheVerdictWhenTheDocumentWasNotReadPastIt() {
+        def whole = read("first\nsecond\n", 64)
+        def start = read("first\nsecond\nthird line\n", 16)
+
+        assertThat start.verdictBytes(), equalTo("first\nsecond\nthi".getBytes(StandardCharsets.UTF_8))
+        whole.readPast()
+        start.readPast()
+        assertThat whole.verdictBytes(), equalTo("first\nsecond\n".getBytes(StandardCharsets.UTF_8))
+        assertThat start.verdictBytes(), nullValue()
+    }
+
+    @Test
+    public void shouldSplitLinesEndingWithCarriageReturnAndLineFeed() {
+        def prefix = read("first\r\nsecond\r\n\r\nthird\rfourth", 64)
+
+        assertThat prefix.lines(10), equalTo(["first", "second", "", "third", "fourth"])
+        assertThat prefix.firstLines(3), is("first\nsecond\n\n")
+    }
+
+    @Test
+    public void shouldNotStartLineWithLineFeedCutOffAfterCarriageReturn() {
+        def prefix = read("first\r\nsecond\r\nthird\r\n", 14)
+
+        assertThat prefix.lines(10), equalTo(["first", "second"])
+        assertThat prefix.covers(3, 2), is(false)
+    }
+
+    @Test
+    public void shouldNotDecodeCharacterCutOffAtTheLimit() {
+        // The é takes two bytes, only the first one fits
+        def prefix = read("first\nsecond é\n", 14)
+
+        assertThat prefix.lines(10), equalTo(["first"])
+        assertThat prefix.firstLines(2), nullValue()
+    }
+
+    @Test
+    public void shouldDecodeMultiByteCharactersThatFit() {
+        def prefix = read("Copyright © 2012 Jürgen\nkey = value\n", 64)
+
+        assertThat prefix.lines(10), equalTo(["Copyright © 2012 Jürgen", "key = value"])
+    }
+
+    @Test
+    public void shouldReplaceMalformedInputLikeAReader() {
+        def file = folder.newFile("malformed.properties")
+        file.bytes = [0x61, 0xFF, 0x62, 0x0A] as byte[]
+
+        def prefix = DocumentPrefix.read(file, 64, StandardCharsets.UTF_8)
+
+        assertThat prefix.lines(10), equalTo([new String([0x61, 0xFF, 0x62] as byte[], StandardCharsets.UTF_8)])
+    }
+
+    @Test
+    public void shouldRecognizeBinaryFiles() {
+        def png = folder.newFile("image.png")
+        png.bytes = [0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A] as byte[]
+        def nul = folder.newFile("nul.properties")
+        nul.bytes = [0x61, 0x00, 0x62] as byte[]
+
+        assertThat DocumentPrefix.read(png, 64, StandardCharsets.UTF_8).binary(), is(true)
+        assertThat DocumentPrefix.read(nul, 64, StandardCharsets.UTF_8).binary(), is(true)
+        assertThat DocumentPrefix.read(nul, 64, StandardCharsets.UTF_16BE).binary(), is(false)
+        assertThat read("key = value\n", 64).binary(), is(false)
+    }
+
+    private DocumentPrefix read(String content, int scanBytes) {
+        def file = folder.newFile()
+        file.setText(content, "UTF-8")
+        return DocumentPrefix.read(file, scanBytes, StandardCharsets.UTF_8)
+    }
+}
@@ -0,0 +1,139 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven
+
+import com.mycila.maven.plugin.license.HeaderSection
+import com.mycila.maven.plugin.license.document.Document
+import com.mycila.maven.plugin.license.document.DocumentPropertiesLoader
+import com.mycila.maven.plugin.license.header.Header
+import com.mycila.maven.plugin.license.header.HeaderSource
+import com.mycila.maven.plugin.license.header.HeaderType
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.nio.file.Files
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class DocumentWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    Header header = new Header(new HeaderSource.LiteralHeaderSource("This is the license"), new HeaderSection[0])
+
+    static final String LICENSED = "#\n# This is the license\n#\n\n"
+
+    @Test
+    public void shouldNotRewriteFileWhoseHeaderIsUnchanged() {
+        def licensed = file("licensed.properties", LICENSED + "key = value\n")
+        licensed.setLastModified(1000000000000L)
+        def document = document(licensed)
+        String original = document.content
+        document.removeHeader()
+        document.updateHeader(header)
+
+        assertThat DocumentWriter.save(document, original, licensed), is(false)
+        assertThat licensed.lastModified(), is(1000000000000L)
+        assertThat licensed.getText("UTF-8"), is(LICENSED + "key = value\n")
+    }
+
+    @Test
+    public void shouldCopyTheBytesOfTheBodyAfterTheNewHeader() {
+        String body = "keyé = value € 𝄞\r\n" * 20000 + "last = line ü"
+        def large = file("large.properties", body)
+        def document = document(large)
+        String original = document.content
+        document.updateHeader(header)
+
+        assertThat DocumentWriter.save(document, original, large), is(true)
+        byte[] bytes = large.bytes
+        byte[] bodyBytes = body.getBytes("UTF-8")
+        assertThat bytes, equalTo(document.content.getBytes("UTF-8"))
+        assertThat Arrays.copyOfRange(bytes, bytes.length - bodyBytes.length, bytes.length), equalTo(bodyBytes)
+        assertThat new String(bytes, 0, bytes.length - bodyBytes.length, "UTF-8"), is(LICENSED.replace("\n", "\r\n"))
+    }
+
+    @Test
+    public void shouldRemoveTheHeader() {
+        def licensed = file("licensed.properties", LICENSED + "key = value\n")
+        def document = document(licensed)
+        String original = document.content
+        document.removeHeader()
+
+        assertThat DocumentWriter.save(document, original, licensed), is(true)
+        assertThat licensed.getText("UTF-8"), is(document.content)
+        assertThat licensed.getText("UTF-8"), not(containsString("This is the license"))
+        assertThat licensed.getText("UTF-8"), containsString("key = value\n")
+    }
+
+    @Test
+    public void shouldWriteAllContentForEncodingWithByteOrderMark() {
+        def utf16 = file("utf16.properties", "key = välue\n", "UTF-16")
+        def document = document(utf16, "UTF-16")
+        String original = document.content
+        document.updateHeader(header)
+
+        assertThat DocumentWriter.save(document, original, utf16), is(true)
+        assertThat utf16.bytes, equalTo(document.content.getBytes("UTF-16"))
+        assertThat utf16.getText("UTF-16"), is(LICENSED + "key = välue\n")
+    }
+
+    @Test
+    public void shouldLeaveTheDocumentAloneWhenWritingElsewhere() {
+        def source = file("source.properties", "key = value\n")
+        def destination = new File(folder.root, "source.properties.licensed")
+        def document = document(source)
+        String original = document.content
+        document.updateHeader(header)
+
+        assertThat DocumentWriter.save(document, original, destination), is(true)
+        assertThat source.getText("UTF-8"), is("key = value\n")
+        assertThat destination.getText("UTF-8"), is(LICENSED + "key = value\n")
+    }
+
+    @Test
+    public void shouldWriteTheFileALinkPointsTo() {
+        def target = file("target.properties", "key = value\n")
+        def link = Files.createSymbolicLink(new File(folder.root, "link.properties").toPath(), target.toPath()).toFile()
+        def document = document(link)
+        String original = document.content
+        document.updateHeader(header)
+
+        assertThat DocumentWriter.save(document, original, link), is(true)
+        assertThat Files.isSymbolicLink(link.toPath()), is(true)
+        assertThat target.getText("UTF-8"), is(LICENSED + "key = value\n")
+        assertThat folder.root.list().sort(), equalTo(["link.properties", "target.properties"] as String[])
+    }
+
+    // Parsed, as the format mojo does before it changes the header
+    private static Document document(File file, String encoding = "UTF-8") {
+        def document = new Document(file, HeaderType.SCRIPT_STYLE.definition, encoding, ["license"] as String[], { Document d ->
+            new Properties()
+        } as DocumentPropertiesLoader)
+        document.parseHeader()
+        return document
+    }
+
+    private File file(String name, String content, String encoding = "UTF-8") {
+        def file = folder.newFile(name)
+        file.setText(content, encoding)
+        return file
+    }
+}
@@ -0,0 +1,203 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static nl.javadude.gradle.plugins.license.maven.HeaderCheckCache.Verdict.*
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class HeaderCheckCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    @Test
+    public void shouldReuseVerdictOfUnchangedFile() {
+        def file = file("A.java", "class A {}")
+        store("config") { HeaderCheckCache cache ->
+            assertThat cache.lookup(file), nullValue()
+            cache.record(file, MISSING, null)
+        }
+
+        def cache = newCache()
+        assertThat cache.load("config"), is(true)
+        assertThat cache.lookup(file), is(MISSING)
+    }
+
+    @Test
+    public void shouldReuseVerdictOfTouchedFileThatWasReadAsAWhole() {
+        def file = file("A.java", "class A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, file.bytes)
+        }
+        file.setLastModified(file.lastModified() - 10000)
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.lookup(file), is(OK)
+    }
+
+    @Test
+    public void shouldCheckTouchedFileThatWasNotReadAsAWhole() {
+        def file = file("A.java", "class A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, null)
+        }
+        file.setLastModified(file.lastModified() - 10000)
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.lookup(file), nullValue()
+    }
+
+    @Test
+    public void shouldReuseVerdictOfTouchedFileWithTheSameStart() {
+        def file = file("A.java", "// header\nclass A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, "// header\n".bytes)
+        }
+        long lastModified = file.lastModified()
+        file.text = "// header\nclass B {}"
+        file.setLastModified(lastModified - 10000)
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.lookup(file), is(OK)
+    }
+
+    @Test
+    public void shouldCheckTouchedFileWhoseStartChanged() {
+        def file = file("A.java", "// header\nclass A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, "// header\n".bytes)
+        }
+        long lastModified = file.lastModified()
+        file.text = "// xeader\nclass A {}"
+        file.setLastModified(lastModified - 10000)
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.lookup(file), nullValue()
+    }
+
+    @Test
+    public void shouldCheckChangedFileAgain() {
+        def resized = file("A.java", "class A {}")
+        def edited = file("B.java", "class B {}")
+        store("config") { HeaderCheckCache cache ->
+            [resized, edited].each {
+                cache.lookup(it)
+                cache.record(it, OK, it.bytes)
+            }
+        }
+        long lastModified = edited.lastModified()
+        resized.text = "class A { int a; }"
+        edited.text = "class C {}"
+        edited.setLastModified(lastModified - 10000)
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.lookup(resized), nullValue()
+        assertThat cache.lookup(edited), nullValue()
+    }
+
+    @Test
+    public void shouldRememberVerdictOfFileThatIsNeverRead() {
+        def file = file("a.unknown", "content")
+        store("config") { HeaderCheckCache cache ->
+            cache.remember(file, UNSUPPORTED)
+        }
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.retainUnchanged([], []), equalTo([(file.absoluteFile): UNSUPPORTED])
+    }
+
+    @Test
+    public void shouldIgnoreVerdictsOfAnotherConfiguration() {
+        def file = file("A.java", "class A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, file.bytes)
+        }
+
+        def cache = newCache()
+        assertThat cache.load("other"), is(false)
+        assertThat cache.lookup(file), nullValue()
+    }
+
+    @Test
+    public void shouldDropDeletedFiles() {
+        def kept = file("A.java", "class A {}")
+        def deleted = file("B.java", "class B {}")
+        store("config") { HeaderCheckCache cache ->
+            [kept, deleted].each {
+                cache.lookup(it)
+                cache.record(it, OK, it.bytes)
+            }
+        }
+        store("config") { HeaderCheckCache cache ->
+            cache.retainUnchanged([], [deleted])
+        }
+
+        def cache = newCache()
+        cache.load("config")
+        assertThat cache.retainUnchanged([], []).keySet(), equalTo([kept.absoluteFile] as Set)
+    }
+
+    @Test
+    public void shouldForgetVerdictsWhenDiscarded() {
+        def file = file("A.java", "class A {}")
+        store("config") { HeaderCheckCache cache ->
+            cache.lookup(file)
+            cache.record(file, OK, file.bytes)
+        }
+
+        def cache = newCache()
+        cache.load("config")
+        cache.discard()
+
+        assertThat new File(folder.root, "header-check.cache").exists(), is(false)
+        assertThat newCache().load("config"), is(false)
+    }
+
+    private HeaderCheckCache newCache() {
+        return new HeaderCheckCache(new File(folder.root, "header-check.cache"))
+    }
+
+    private void store(String fingerprint, Closure run) {
+        def cache = newCache()
+        cache.load(fingerprint)
+        run(cache)
+        cache.save()
+    }
+
+    private File file(String name, String content) {
+        def file = new File(folder.root, "src/" + name)
+        file.parentFile.mkdirs()
+        file.text = content
+        return file
+    }
+}
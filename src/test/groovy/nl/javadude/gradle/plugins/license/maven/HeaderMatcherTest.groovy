@@ -0,0 +1,131 @@
+/* License added by: GRADLE-LICENSE-PLUGIN
+ *
+ * Copyright (C)2011 - Jeroen van Erp <jeroen@javadude.nl>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.javadude.gradle.plugins.license.maven
+
+import com.mycila.maven.plugin.license.HeaderSection
+import com.mycila.maven.plugin.license.document.Document
+import com.mycila.maven.plugin.license.document.DocumentPropertiesLoader
+import com.mycila.maven.plugin.license.header.Header
+import com.mycila.maven.plugin.license.header.HeaderSource
+import com.mycila.maven.plugin.license.header.HeaderType
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.nio.charset.StandardCharsets
+
+import static org.hamcrest.CoreMatchers.*
+import static org.junit.Assert.assertThat
+
+class HeaderMatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder()
+
+    Properties shared = new Properties()
+
+    @Test
+    public void shouldRenderHeaderWithFileNameForEveryDocument() {
+        def matcher = matcher(header('Old license for ${file.name}'))
+
+        assertThat matches(matcher, file("a.properties", "# Old license for a.properties\nkey = value\n")), is(true)
+        assertThat matches(matcher, file("b.properties", "# Old license for a.properties\nkey = value\n")), is(false)
+    }
+
+    @Test
+    public void shouldRenderHeaderWithFileNameAsDefaultForEveryDocument() {
+        def matcher = matcher(header('Old license for ${file.name:unknown}'))
+
+        assertThat matches(matcher, file("a.properties", "# Old license for a.properties\n")), is(true)
+        assertThat matches(matcher, file("b.properties", "# Old license for a.properties\n")), is(false)
+    }
+
+    @Test
+    public void shouldRenderHeaderWithPropertyReferencingFileNameForEveryDocument() {
+        shared.put("owner", 'owner-of-${file.name}')
+        def matcher = matcher(header('Copyright by ${owner}'))
+
+        assertThat matches(matcher, file("a.properties", "# Copyright by owner-of-a.properties\n")), is(true)
+        assertThat matches(matcher, file("b.properties", "# Copyright by owner-of-a.properties\n")), is(false)
+    }
+
+    @Test
+    public void shouldAcceptAnyOfTheValidHeaders() {
+        shared.put("year", "2012")
+        def matcher = matcher(header('This is the new license'), header('Created in ${year}'), header('Old license for ${file.name}'))
+
+        assertThat matches(matcher, file("new.properties", "# This is the new license\n")), is(true)
+        assertThat matches(matcher, file("year.properties", "#\n# Created in 2012\n#\nkey = value\n")), is(true)
+        assertThat matches(matcher, file("old.properties", "# Old license for old.properties\n")), is(true)
+        assertThat matches(matcher, file("other.properties", "# Created in 1999\n# Old license for other\n")), is(false)
+    }
+
+    @Test
+    public void shouldOnlyFindHeaderInTheFirstLines() {
+        def matcher = matcher(header('This is the new license'))
+        def late = file("late.properties", "key = value\n" * 11 + "# This is the new license\n")
+        def early = file("early.properties", "key = value\n" * 10 + "# This is the new license\n")
+
+        assertThat matches(matcher, late), is(false)
+        assertThat matches(matcher, early), is(true)
+    }
+
+    @Test
+    public void shouldReadTheDocumentWhenTheHeaderDoesNotFitInThePrefix() {
+        def matcher = matcher(header('This is the new license\nwith a second line\nand a third line'))
+        def header = file("long.properties", "#\n# This is the new license\n# with a second line\n# and a third line\n#\n")
+
+        assertThat matches(matcher, header, 16), is(true)
+        assertThat matches(matcher, file("wrong.properties", "#\n# This is the new license\n# with another line\n"), 16), is(false)
+    }
+
+    @Test
+    public void shouldMatchCommentThatSpansLines() {
+        def matcher = matcher(header('This is the new license'))
+
+        assertThat matches(matcher, file("Test.java", "/*\n * This is the new license\n */\npublic class Test {}\n"), DEFAULT_SCAN, HeaderType.JAVADOC_STYLE), is(true)
+        assertThat matches(matcher, file("Other.java", "public class Other {}\n"), DEFAULT_SCAN, HeaderType.JAVADOC_STYLE), is(false)
+    }
+
+    private static final int DEFAULT_SCAN = AbstractLicenseMojo.DEFAULT_SCAN_BYTES
+
+    private HeaderMatcher matcher(Header h, Header... validHeaders) {
+        return AbstractLicenseMojo.buildMatcher(h, validHeaders.toList(), shared)
+    }
+
+    // Every outcome has to be the one of Document#hasHeader for any of the headers
+    private boolean matches(HeaderMatcher matcher, File file, int scanBytes = DEFAULT_SCAN, HeaderType type = HeaderType.SCRIPT_STYLE) {
+        def document = new Document(file, type.definition, "UTF-8", ["copyright"] as String[], { Document d ->
+            def properties = new Properties(shared)
+            properties.put("file.name", d.file.name)
+            properties
+        } as DocumentPropertiesLoader)
+        boolean found = matcher.matches(document, DocumentPrefix.read(file, scanBytes, StandardCharsets.UTF_8))
+        assertThat matcher.headers.any { document.hasHeader(it, false) }, is(found)
+        return found
+    }
+
+    private static Header header(String text) {
+        return new Header(new HeaderSource.LiteralHeaderSource(text), new HeaderSection[0])
+    }
+
+    private File file(String name, String content) {
+        def file = folder.newFile(name)
+        file.setText(content, "UTF-8")
+        return file
+    }
+}